@@ -51,8 +51,15 @@ export interface PageResponse<T> {
 const API_URL = import.meta.env.VITE_API_URL || 'http://localhost:8080/api';
 
 // Funcion para obtener todos los videos con paginacion
-const fetchVideos = async (page: number = 0, size: number = 12): Promise<PageResponse<Video>> => {
-  const response = await fetch(`${API_URL}/videos?page=${page}&size=${size}`);
+// Con sesion iniciada se envia el token para recibir el feed de inicio (suscripciones primero)
+const fetchVideos = async (
+  page: number = 0,
+  size: number = 12,
+  token?: string | null
+): Promise<PageResponse<Video>> => {
+  const response = await fetch(`${API_URL}/videos?page=${page}&size=${size}`, {
+    headers: token ? { 'Authorization': `Bearer ${token}` } : undefined,
+  });
   if (!response.ok) {
     throw new Error('Error al obtener videos');
   }
@@ -70,9 +77,11 @@ const fetchVideoById = async (id: string): Promise<Video> => {
 
 // Hook para obtener todos los videos con paginacion
 export function useVideos(page: number = 0, size: number = 12) {
+  const { token } = useAuthContext();
+
   return useQuery({
-    queryKey: ['videos', page, size],
-    queryFn: () => fetchVideos(page, size),
+    queryKey: ['videos', page, size, token],
+    queryFn: () => fetchVideos(page, size, token),
   });
 }
 
@@ -5,12 +5,22 @@ import com.josval.miniyoutube.admin.dto.AdminReactionRequest;
 import com.josval.miniyoutube.admin.dto.AdminSubscriptionRequest;
 import com.josval.miniyoutube.admin.dto.AdminUserRequest;
 import com.josval.miniyoutube.admin.dto.AdminVideoRequest;
+import com.josval.miniyoutube.analytics.ViewRollupService;
+import com.josval.miniyoutube.analytics.dto.ViewSeriesResponse;
+import com.josval.miniyoutube.analytics.enums.RollupGranularity;
 import com.josval.miniyoutube.comment.CommentEntity;
+import com.josval.miniyoutube.comment.CommentPageCache;
 import com.josval.miniyoutube.subscription.SubscriptionEntity;
+import com.josval.miniyoutube.user.UserCache;
 import com.josval.miniyoutube.user.UserEntity;
+import com.josval.miniyoutube.video.CreatorSummary;
+import com.josval.miniyoutube.video.CreatorSummaryService;
+import com.josval.miniyoutube.video.TranscodingQueueService;
 import com.josval.miniyoutube.video.VideoEntity;
 import com.josval.miniyoutube.video.VideoReaction;
 import com.josval.miniyoutube.video.VideoView;
+import com.josval.miniyoutube.video.enums.TranscodingLane;
+import java.time.Instant;
 import java.util.Date;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
@@ -20,9 +30,13 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 @Service
 @RequiredArgsConstructor
@@ -31,6 +45,11 @@ public class AdminCrudService {
   @Qualifier("adminMongoTemplate")
   private final MongoTemplate adminMongoTemplate;
   private final PasswordEncoder passwordEncoder;
+  private final TranscodingQueueService transcodingQueueService;
+  private final CreatorSummaryService creatorSummaryService;
+  private final ViewRollupService viewRollupService;
+  private final UserCache userCache;
+  private final CommentPageCache commentPageCache;
 
   public Page<UserEntity> listUsers(int page, int size) {
     Pageable pageable = PageRequest.of(page, size);
@@ -56,23 +75,33 @@ public class AdminCrudService {
   }
 
   public UserEntity updateUser(String id, AdminUserRequest request) {
-    UserEntity user = adminMongoTemplate.findById(id, UserEntity.class);
-    if (user == null) {
+    if (!adminMongoTemplate.exists(Query.query(Criteria.where("_id").is(id)), UserEntity.class)) {
       return null;
     }
-    if (request.getUsername() != null) user.setUsername(request.getUsername());
-    if (request.getEmail() != null) user.setEmail(request.getEmail());
-    if (request.getPassword() != null) user.setPassword(passwordEncoder.encode(request.getPassword()));
-    if (request.getChannelName() != null) user.setChannelName(request.getChannelName());
-    if (request.getAvatarURL() != null) user.setAvatarURL(request.getAvatarURL());
-    if (request.getCreatedAt() != null) user.setCreatedAt(request.getCreatedAt());
-    return adminMongoTemplate.save(user);
+    // Solo los campos enviados: un save() completo pisaría subscriberCount y feedPullOnRead
+    Update update = new Update();
+    if (request.getUsername() != null) update.set("username", request.getUsername());
+    if (request.getEmail() != null) update.set("email", request.getEmail());
+    if (request.getPassword() != null) update.set("password", passwordEncoder.encode(request.getPassword()));
+    if (request.getChannelName() != null) update.set("channelName", request.getChannelName());
+    if (request.getAvatarURL() != null) update.set("avatarURL", request.getAvatarURL());
+    if (request.getCreatedAt() != null) update.set("createdAt", request.getCreatedAt());
+    if (!update.getUpdateObject().isEmpty()) {
+      adminMongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id)), update, UserEntity.class);
+    }
+    userCache.invalidate(id);
+    UserEntity saved = adminMongoTemplate.findById(id, UserEntity.class);
+    if (saved != null && (request.getChannelName() != null || request.getAvatarURL() != null)) {
+      creatorSummaryService.propagate(saved);
+    }
+    return saved;
   }
 
   public void deleteUser(String id) {
     UserEntity user = adminMongoTemplate.findById(id, UserEntity.class);
     if (user != null) {
       adminMongoTemplate.remove(user);
+      userCache.invalidate(id);
     }
   }
 
@@ -93,6 +122,7 @@ public class AdminCrudService {
     if (request.getCreatorId() != null) {
       UserEntity creator = adminMongoTemplate.findById(request.getCreatorId(), UserEntity.class);
       video.setCreator(creator);
+      video.setCreatorSummary(creator != null ? CreatorSummary.from(creator) : null);
     }
     applyVideoFields(video, request);
     video.setCreatedAt(Optional.ofNullable(request.getCreatedAt()).orElse(new Date()));
@@ -107,18 +137,49 @@ public class AdminCrudService {
     if (request.getCreatorId() != null) {
       UserEntity creator = adminMongoTemplate.findById(request.getCreatorId(), UserEntity.class);
       video.setCreator(creator);
+      video.setCreatorSummary(creator != null ? CreatorSummary.from(creator) : null);
     }
     applyVideoFields(video, request);
     if (request.getCreatedAt() != null) {
       video.setCreatedAt(request.getCreatedAt());
     }
-    return adminMongoTemplate.save(video);
+    VideoEntity saved = adminMongoTemplate.save(video);
+    // Puede haber cambiado la privacidad: la primera página cacheada de comentarios deja de valer
+    commentPageCache.invalidate(id);
+    return saved;
+  }
+
+  /**
+   * Encolar la re-codificación de un video desde su original archivado (carril BACKFILL, menor prioridad)
+   */
+  public VideoEntity reencodeVideo(String id) {
+    VideoEntity video = adminMongoTemplate.findById(id, VideoEntity.class);
+    if (video == null) {
+      return null;
+    }
+    if (video.getOriginalVideoUrl() == null) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "El video no tiene un original archivado");
+    }
+    if (transcodingQueueService.hasJob(id)) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "El video ya tiene un procesamiento pendiente");
+    }
+    String creatorId = video.getCreatorId();
+    transcodingQueueService.enqueue(id, creatorId, null, TranscodingLane.BACKFILL);
+    return video;
+  }
+
+  public ViewSeriesResponse getVideoViewSeries(String id, RollupGranularity granularity, Instant from, Instant to) {
+    if (!adminMongoTemplate.exists(Query.query(Criteria.where("_id").is(id)), VideoEntity.class)) {
+      return null;
+    }
+    return viewRollupService.getSeries(id, granularity, from, to);
   }
 
   public void deleteVideo(String id) {
     VideoEntity video = adminMongoTemplate.findById(id, VideoEntity.class);
     if (video != null) {
       adminMongoTemplate.remove(video);
+      commentPageCache.invalidate(id);
     }
   }
 
@@ -1,9 +1,13 @@
 package com.josval.miniyoutube.admin;
 
 import com.josval.miniyoutube.admin.dto.AdminVideoRequest;
+import com.josval.miniyoutube.analytics.dto.ViewSeriesResponse;
+import com.josval.miniyoutube.analytics.enums.RollupGranularity;
 import com.josval.miniyoutube.video.VideoEntity;
+import java.time.Instant;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -47,6 +51,22 @@ public class AdminVideoController {
     return updated != null ? ResponseEntity.ok(updated) : ResponseEntity.notFound().build();
   }
 
+  @PostMapping("/{id}/reencode")
+  public ResponseEntity<VideoEntity> reencode(@PathVariable String id) {
+    VideoEntity video = adminCrudService.reencodeVideo(id);
+    return video != null ? ResponseEntity.accepted().body(video) : ResponseEntity.notFound().build();
+  }
+
+  @GetMapping("/{id}/analytics/views")
+  public ResponseEntity<ViewSeriesResponse> viewSeries(
+      @PathVariable String id,
+      @RequestParam(required = false) RollupGranularity granularity,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+    ViewSeriesResponse series = adminCrudService.getVideoViewSeries(id, granularity, from, to);
+    return series != null ? ResponseEntity.ok(series) : ResponseEntity.notFound().build();
+  }
+
   @DeleteMapping("/{id}")
   public ResponseEntity<Void> delete(@PathVariable String id) {
     adminCrudService.deleteVideo(id);
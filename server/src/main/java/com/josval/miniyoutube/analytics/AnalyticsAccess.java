@@ -0,0 +1,36 @@
+package com.josval.miniyoutube.analytics;
+
+import com.josval.miniyoutube.user.UserCache;
+import com.josval.miniyoutube.user.UserEntity;
+import com.josval.miniyoutube.video.VideoEntity;
+import com.josval.miniyoutube.video.VideoRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Las estadísticas de un video solo las puede consultar su creador
+ */
+@Component
+@RequiredArgsConstructor
+public class AnalyticsAccess {
+
+  private final VideoRepository videoRepository;
+  private final UserCache userCache;
+
+  public void requireCreator(String videoId, String userEmail) {
+    if (userEmail == null) {
+      throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Debes iniciar sesión");
+    }
+
+    VideoEntity video = videoRepository.findById(videoId)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Video no encontrado"));
+    UserEntity user = userCache.findByEmail(userEmail)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Usuario no encontrado"));
+
+    if (!user.getId().equals(video.getCreatorId())) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Solo el creador puede ver las estadísticas del video");
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package com.josval.miniyoutube.analytics;
+
+import com.josval.miniyoutube.analytics.dto.UniqueViewersResponse;
+import com.josval.miniyoutube.analytics.dto.ViewSeriesResponse;
+import com.josval.miniyoutube.analytics.enums.RollupGranularity;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/videos/{videoId}/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+  private final UniqueViewerService uniqueViewerService;
+  private final ViewRollupService viewRollupService;
+
+  @GetMapping("/views")
+  @Operation(summary = "Vistas en el tiempo",
+      description = "Serie por minuto (últimas 48 horas), hora o día, leída de buckets pre-agregados; máximo 1500 puntos")
+  public ResponseEntity<ViewSeriesResponse> getViewSeries(
+      @Parameter(description = "ID del video") @PathVariable String videoId,
+      @Parameter(description = "MINUTE, HOUR o DAY (por defecto DAY)") @RequestParam(required = false)
+      RollupGranularity granularity,
+      @Parameter(description = "Desde (ISO-8601, por defecto 29 buckets antes de to)") @RequestParam(required = false)
+      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+      @Parameter(description = "Hasta (ISO-8601, por defecto ahora)") @RequestParam(required = false)
+      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+    return ResponseEntity.ok(viewRollupService.getSeriesForCreator(videoId, currentUserEmail(), granularity, from, to));
+  }
+
+  @GetMapping("/unique-viewers")
+  @Operation(summary = "Espectadores únicos estimados",
+      description = "Incluye anónimos. Estimación HyperLogLog (~1.6% de error); fechas en UTC, máximo 90 días")
+  public ResponseEntity<UniqueViewersResponse> getUniqueViewers(
+      @Parameter(description = "ID del video") @PathVariable String videoId,
+      @Parameter(description = "Desde (yyyy-MM-dd, por defecto hace 29 días)") @RequestParam(required = false)
+      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @Parameter(description = "Hasta (yyyy-MM-dd, por defecto hoy)") @RequestParam(required = false)
+      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+    return ResponseEntity.ok(uniqueViewerService.getUniqueViewers(videoId, currentUserEmail(), from, to));
+  }
+
+  private String currentUserEmail() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication != null && authentication.isAuthenticated()
+        && !"anonymousUser".equals(authentication.getPrincipal())) {
+      return authentication.getName();
+    }
+    return null;
+  }
+}
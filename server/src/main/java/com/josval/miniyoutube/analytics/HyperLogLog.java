@@ -0,0 +1,128 @@
+package com.josval.miniyoutube.analytics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Estimador HyperLogLog de elementos distintos (precisión 12: 4096 registros, ~1.6% de error)
+ * Los registros se guardan como un byte cada uno (4 KB) y se combinan tomando el máximo,
+ * así las uniones entre nodos y días son conmutativas e idempotentes
+ */
+public class HyperLogLog {
+
+  public static final int PRECISION = 12;
+  public static final int REGISTERS = 1 << PRECISION;
+
+  private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+  private final byte[] registers;
+
+  public HyperLogLog() {
+    this.registers = new byte[REGISTERS];
+  }
+
+  private HyperLogLog(byte[] registers) {
+    this.registers = registers;
+  }
+
+  /**
+   * Reconstruir un estimador a partir de registros guardados (null o tamaño distinto = vacío)
+   */
+  public static HyperLogLog fromBytes(byte[] registers) {
+    if (registers == null || registers.length != REGISTERS) {
+      return new HyperLogLog();
+    }
+    return new HyperLogLog(registers.clone());
+  }
+
+  public synchronized byte[] toBytes() {
+    return registers.clone();
+  }
+
+  /**
+   * Agregar un elemento; retorna true si algún registro cambió
+   */
+  public boolean offer(String value) {
+    return offerHash(hash(value));
+  }
+
+  public synchronized boolean offerHash(long hash) {
+    int index = (int) (hash >>> (64 - PRECISION));
+    // Rango acotado a 64 - p + 1 marcando el último bit disponible
+    byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Unir otro estimador en este (máximo por registro)
+   */
+  public void merge(HyperLogLog other) {
+    byte[] source = other.toBytes();
+    synchronized (this) {
+      for (int i = 0; i < REGISTERS; i++) {
+        if (source[i] > registers[i]) {
+          registers[i] = source[i];
+        }
+      }
+    }
+  }
+
+  public synchronized boolean isEmpty() {
+    for (byte register : registers) {
+      if (register != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Estimación de cardinalidad con corrección de rango bajo (linear counting)
+   */
+  public synchronized long estimate() {
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+
+    double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+    if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+      estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  @Override
+  public synchronized boolean equals(Object other) {
+    return other instanceof HyperLogLog hll && Arrays.equals(registers, hll.toBytes());
+  }
+
+  @Override
+  public synchronized int hashCode() {
+    return Arrays.hashCode(registers);
+  }
+
+  /**
+   * Hash de 64 bits (FNV-1a con mezcla final de murmur3)
+   */
+  static long hash(String value) {
+    long hash = 0xCBF29CE484222325L;
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
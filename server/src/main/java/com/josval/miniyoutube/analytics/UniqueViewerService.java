@@ -0,0 +1,207 @@
+package com.josval.miniyoutube.analytics;
+
+import com.josval.miniyoutube.analytics.dto.UniqueViewersResponse;
+import com.josval.miniyoutube.config.NodeRole;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Espectadores únicos por video y por día (UTC) estimados con HyperLogLog
+ * Cuenta usuarios autenticados y espectadores anónimos (sesión o huella IP + User-Agent)
+ * Cada nodo acumula en memoria y une periódicamente sus registros con viewer_sketches
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UniqueViewerService {
+
+  private static final String ALL_TIME = "all";
+  private static final int MAX_MERGE_ATTEMPTS = 5;
+  private static final int MAX_RANGE_DAYS = 90;
+
+  private final ViewerSketchRepository sketchRepository;
+  private final AnalyticsAccess analyticsAccess;
+  private final NodeRole nodeRole;
+
+  private final Map<String, LocalSketch> pending = new ConcurrentHashMap<>();
+
+  /**
+   * Registrar una reproducción; las repetidas del mismo espectador no cambian la estimación
+   */
+  public void record(String videoId, String viewerKey) {
+    if (videoId == null || viewerKey == null) {
+      return;
+    }
+    long hash = HyperLogLog.hash(viewerKey);
+    String day = LocalDate.now(ZoneOffset.UTC).toString();
+    offer(key(videoId, day), hash);
+    offer(key(videoId, ALL_TIME), hash);
+  }
+
+  /**
+   * Espectadores únicos de un video: acumulado, rango completo y desglose diario (solo el creador)
+   */
+  public UniqueViewersResponse getUniqueViewers(String videoId, String userEmail, LocalDate from, LocalDate to) {
+    analyticsAccess.requireCreator(videoId, userEmail);
+
+    LocalDate end = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+    LocalDate start = from != null ? from : end.minusDays(29);
+    if (start.isAfter(end) || ChronoUnit.DAYS.between(start, end) >= MAX_RANGE_DAYS) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "Rango inválido (máximo " + MAX_RANGE_DAYS + " días)");
+    }
+
+    List<String> keys = new ArrayList<>();
+    keys.add(key(videoId, ALL_TIME));
+    for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+      keys.add(key(videoId, day.toString()));
+    }
+    Map<String, ViewerSketch> stored = sketchRepository.findAllById(keys).stream()
+        .collect(Collectors.toMap(ViewerSketch::getId, Function.identity()));
+
+    HyperLogLog range = new HyperLogLog();
+    List<UniqueViewersResponse.DailyViewers> daily = new ArrayList<>();
+    for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+      HyperLogLog sketch = current(key(videoId, day.toString()), stored);
+      range.merge(sketch);
+      daily.add(new UniqueViewersResponse.DailyViewers(day.toString(), sketch.estimate()));
+    }
+
+    long total = current(key(videoId, ALL_TIME), stored).estimate();
+    return new UniqueViewersResponse(videoId, total, range.estimate(), daily);
+  }
+
+  /**
+   * Unir los registros pendientes de cada clave con Mongo
+   * Los estimadores acumulados y de días pasados ya escritos se descartan de memoria; el del día
+   * actual se conserva porque sigue recibiendo la mayoría de las reproducciones
+   */
+  @Scheduled(fixedDelayString = "${analytics.viewers.flush-ms:30000}")
+  public synchronized void flush() {
+    if (!nodeRole.servesTraffic()) {
+      return;  // Los workers no registran vistas
+    }
+    String today = LocalDate.now(ZoneOffset.UTC).toString();
+
+    pending.forEach((key, local) -> {
+      if (local.dirty.getAndSet(false)) {
+        try {
+          mergeIntoStore(local);
+        } catch (Exception e) {
+          local.dirty.set(true);
+          log.error("Error guardando espectadores únicos de {}: {}", key, e.getMessage());
+          return;
+        }
+      }
+
+      if (!today.equals(local.day)) {
+        // Atómico respecto a offer(): si llegó un registro tras la escritura se conserva
+        pending.computeIfPresent(key, (k, current) -> current == local && !current.dirty.get() ? null : current);
+      }
+    });
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    flush();
+  }
+
+  /**
+   * Unión optimista: leer, combinar registros y guardar con la versión leída
+   * Si otro nodo escribió entre medio se reintenta; la unión por máximo es idempotente
+   */
+  private void mergeIntoStore(LocalSketch local) {
+    for (int attempt = 0; attempt < MAX_MERGE_ATTEMPTS; attempt++) {
+      ViewerSketch stored = sketchRepository.findById(local.key).orElse(null);
+      HyperLogLog merged = stored != null ? HyperLogLog.fromBytes(stored.getRegisters()) : new HyperLogLog();
+      HyperLogLog before = HyperLogLog.fromBytes(merged.toBytes());
+      merged.merge(local.sketch);
+      if (stored != null && merged.equals(before)) {
+        return;
+      }
+
+      if (stored == null) {
+        stored = new ViewerSketch(local.key, local.videoId, ALL_TIME.equals(local.day) ? null : local.day,
+            null, null, null);
+      }
+      stored.setRegisters(merged.toBytes());
+      stored.setUpdatedAt(new Date());
+
+      try {
+        sketchRepository.save(stored);
+        return;
+      } catch (OptimisticLockingFailureException | DuplicateKeyException e) {
+        log.debug("Conflicto guardando {} (intento {}), reintentando", local.key, attempt + 1);
+      }
+    }
+    throw new IllegalStateException("No se pudo unir el estimador " + local.key + " tras " + MAX_MERGE_ATTEMPTS + " intentos");
+  }
+
+  /**
+   * Registrar dentro de compute para que el descarte de flush() no pierda un registro concurrente
+   */
+  private void offer(String key, long hash) {
+    pending.compute(key, (k, existing) -> {
+      LocalSketch local = existing != null ? existing : new LocalSketch(k);
+      local.offer(hash);
+      return local;
+    });
+  }
+
+  /**
+   * Estimador guardado más lo pendiente en este nodo
+   */
+  private HyperLogLog current(String key, Map<String, ViewerSketch> stored) {
+    ViewerSketch sketch = stored.get(key);
+    HyperLogLog result = HyperLogLog.fromBytes(sketch != null ? sketch.getRegisters() : null);
+    LocalSketch local = pending.get(key);
+    if (local != null) {
+      result.merge(local.sketch);
+    }
+    return result;
+  }
+
+  private static String key(String videoId, String day) {
+    return videoId + ":" + day;
+  }
+
+  private static class LocalSketch {
+    private final String key;
+    private final String videoId;
+    private final String day;
+    private final HyperLogLog sketch = new HyperLogLog();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private LocalSketch(String key) {
+      int separator = key.lastIndexOf(':');
+      this.key = key;
+      this.videoId = key.substring(0, separator);
+      this.day = key.substring(separator + 1);
+    }
+
+    private void offer(long hash) {
+      if (sketch.offerHash(hash)) {
+        dirty.set(true);
+      }
+    }
+  }
+}
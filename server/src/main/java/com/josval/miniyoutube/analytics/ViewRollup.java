@@ -0,0 +1,37 @@
+package com.josval.miniyoutube.analytics;
+
+import com.josval.miniyoutube.analytics.enums.RollupGranularity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.util.Date;
+
+/**
+ * Bucket pre-agregado de vistas de un video (minuto, hora o día)
+ * Los gráficos leen solo estos documentos, nunca los eventos individuales
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "view_rollups")
+@CompoundIndex(name = "video_granularity_start_idx", def = "{'videoId': 1, 'granularity': 1, 'bucketStart': 1}")
+public class ViewRollup {
+  @MongoId
+  private String id;  // {videoId}:{granularity}:{epochMillis}
+
+  private String videoId;
+  private RollupGranularity granularity;
+  private Date bucketStart;
+  private Long views;  // Vistas contadas en views_count (primera vista de un usuario)
+  private Long plays;  // Reproducciones, incluidas repetidas y anónimas
+
+  @Indexed(expireAfterSeconds = 0)
+  private Date expireAt;  // Solo en buckets de minuto: TTL de retención
+}
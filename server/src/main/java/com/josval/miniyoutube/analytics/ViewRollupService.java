@@ -0,0 +1,259 @@
+package com.josval.miniyoutube.analytics;
+
+import com.josval.miniyoutube.analytics.dto.ViewSeriesResponse;
+import com.josval.miniyoutube.analytics.enums.RollupGranularity;
+import com.josval.miniyoutube.config.NodeRole;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Series temporales de vistas por video en buckets de minuto, hora y día
+ * Los eventos se agregan en memoria por minuto y se escriben con un bulk upsert de $inc
+ * sobre los tres niveles a la vez; los buckets de minuto expiran por TTL
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ViewRollupService {
+
+  private static final int MAX_POINTS = 1500;
+
+  private final MongoTemplate mongoTemplate;
+  private final AnalyticsAccess analyticsAccess;
+  private final NodeRole nodeRole;
+
+  private final Map<MinuteKey, MinuteCounter> buffer = new ConcurrentHashMap<>();
+
+  @Value("${analytics.rollups.minute-retention-hours:48}")
+  private long minuteRetentionHours;
+
+  /**
+   * Registrar una reproducción; counted indica si además sumó a views_count
+   */
+  public void record(String videoId, boolean counted) {
+    if (videoId == null) {
+      return;
+    }
+    Instant minute = RollupGranularity.MINUTE.bucketStart(Instant.now());
+    // Dentro de compute para que el descarte de flush() no deje el evento en un contador ya quitado
+    buffer.compute(new MinuteKey(videoId, minute), (key, existing) -> {
+      MinuteCounter counter = existing != null ? existing : new MinuteCounter();
+      counter.plays.increment();
+      if (counted) {
+        counter.views.increment();
+      }
+      return counter;
+    });
+  }
+
+  /**
+   * Escribir los deltas pendientes: un upsert por bucket de minuto, hora y día afectado
+   * Cada minuto en memoria lleva lo escrito por nivel, así en un fallo parcial del bulk solo se
+   * reintentan los buckets cuyas operaciones fallaron (los demás ya recibieron su $inc)
+   */
+  @Scheduled(fixedDelayString = "${analytics.rollups.flush-ms:10000}")
+  public synchronized void flush() {
+    if (!nodeRole.servesTraffic()) {
+      return;  // Los workers no registran vistas
+    }
+    // En el mismo orden que las operaciones del bulk (los errores se reportan por índice)
+    Map<String, long[]> deltas = new LinkedHashMap<>();
+    Map<String, List<Contribution>> contributions = new HashMap<>();
+    Instant currentMinute = RollupGranularity.MINUTE.bucketStart(Instant.now());
+
+    buffer.forEach((key, counter) -> {
+      long views = counter.views.sum();
+      long plays = counter.plays.sum();
+      if (counter.isFlushed(views, plays)) {
+        // Minutos cerrados y ya escritos en todos los niveles se descartan
+        if (key.minute().isBefore(currentMinute)) {
+          evict(key, counter);
+        }
+        return;
+      }
+      for (RollupGranularity granularity : RollupGranularity.values()) {
+        int level = granularity.ordinal();
+        long pendingViews = views - counter.flushedViews[level];
+        long pendingPlays = plays - counter.flushedPlays[level];
+        if (pendingViews == 0 && pendingPlays == 0) {
+          continue;
+        }
+        String id = rollupId(key.videoId(), granularity, granularity.bucketStart(key.minute()));
+        long[] delta = deltas.computeIfAbsent(id, bucket -> new long[2]);
+        delta[0] += pendingViews;
+        delta[1] += pendingPlays;
+        contributions.computeIfAbsent(id, bucket -> new ArrayList<>())
+            .add(new Contribution(counter, level, pendingViews, pendingPlays));
+      }
+    });
+
+    if (deltas.isEmpty()) {
+      return;
+    }
+
+    List<String> ids = new ArrayList<>(deltas.keySet());
+    BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ViewRollup.class);
+    ids.forEach(id -> ops.upsert(Query.query(Criteria.where("_id").is(id)), upsertUpdate(id, deltas.get(id))));
+
+    try {
+      ops.execute();
+      markFlushed(ids, contributions, Set.of());
+    } catch (BulkOperationException e) {
+      Set<Integer> failed = new HashSet<>();
+      e.getErrors().forEach(error -> failed.add(error.getIndex()));
+      markFlushed(ids, contributions, failed);
+      log.error("Error escribiendo {} de {} buckets de vistas, se reintentarán: {}",
+          failed.size(), ids.size(), e.getMessage());
+    } catch (Exception e) {
+      log.error("Error escribiendo series de vistas, se reintentará: {}", e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    flush();
+  }
+
+  /**
+   * Serie de vistas de un video para el creador
+   */
+  public ViewSeriesResponse getSeriesForCreator(String videoId, String userEmail, RollupGranularity granularity,
+      Instant from, Instant to) {
+    analyticsAccess.requireCreator(videoId, userEmail);
+    return getSeries(videoId, granularity, from, to);
+  }
+
+  /**
+   * Serie de vistas de un video leyendo solo buckets pre-agregados (sin validar permisos)
+   */
+  public ViewSeriesResponse getSeries(String videoId, RollupGranularity granularity, Instant from, Instant to) {
+    RollupGranularity resolved = granularity != null ? granularity : RollupGranularity.DAY;
+    Instant end = resolved.bucketStart(to != null ? to : Instant.now());
+    Instant start = resolved.bucketStart(from != null ? from : end.minus(resolved.getSize().multipliedBy(29)));
+
+    long points = Duration.between(start, end).toMillis() / resolved.getSize().toMillis() + 1;
+    if (start.isAfter(end) || points > MAX_POINTS) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "Rango inválido (máximo " + MAX_POINTS + " puntos por serie)");
+    }
+    if (resolved == RollupGranularity.MINUTE
+        && start.isBefore(Instant.now().minus(Duration.ofHours(minuteRetentionHours)))) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "Los buckets por minuto solo se conservan " + minuteRetentionHours + " horas");
+    }
+
+    Query query = Query.query(Criteria.where("videoId").is(videoId)
+            .and("granularity").is(resolved)
+            .and("bucketStart").gte(Date.from(start)).lte(Date.from(end)))
+        .with(Sort.by(Sort.Direction.ASC, "bucketStart"));
+    Map<Instant, ViewRollup> stored = new HashMap<>();
+    for (ViewRollup rollup : mongoTemplate.find(query, ViewRollup.class)) {
+      stored.put(rollup.getBucketStart().toInstant(), rollup);
+    }
+
+    // Completar con ceros los buckets sin vistas para que el gráfico tenga el eje continuo
+    List<ViewSeriesResponse.Point> series = new ArrayList<>();
+    long totalViews = 0;
+    long totalPlays = 0;
+    for (Instant bucket = start; !bucket.isAfter(end); bucket = bucket.plus(resolved.getSize())) {
+      ViewRollup rollup = stored.get(bucket);
+      long views = rollup != null && rollup.getViews() != null ? rollup.getViews() : 0;
+      long plays = rollup != null && rollup.getPlays() != null ? rollup.getPlays() : 0;
+      totalViews += views;
+      totalPlays += plays;
+      series.add(new ViewSeriesResponse.Point(Date.from(bucket), views, plays));
+    }
+
+    return new ViewSeriesResponse(videoId, resolved, totalViews, totalPlays, series);
+  }
+
+  private void markFlushed(List<String> ids, Map<String, List<Contribution>> contributions, Set<Integer> failed) {
+    for (int i = 0; i < ids.size(); i++) {
+      if (failed.contains(i)) {
+        continue;
+      }
+      for (Contribution contribution : contributions.get(ids.get(i))) {
+        contribution.counter().flushedViews[contribution.level()] += contribution.views();
+        contribution.counter().flushedPlays[contribution.level()] += contribution.plays();
+      }
+    }
+  }
+
+  /**
+   * Quitar un minuto ya escrito; atómico respecto a record() (si llegó un evento se conserva)
+   */
+  private void evict(MinuteKey key, MinuteCounter counter) {
+    buffer.computeIfPresent(key, (k, current) -> current == counter
+        && current.isFlushed(current.views.sum(), current.plays.sum()) ? null : current);
+  }
+
+  private Update upsertUpdate(String id, long[] delta) {
+    String[] parts = id.split(":");
+    RollupGranularity granularity = RollupGranularity.valueOf(parts[1]);
+    Instant start = Instant.ofEpochMilli(Long.parseLong(parts[2]));
+
+    Update update = new Update()
+        .inc("views", delta[0])
+        .inc("plays", delta[1])
+        .setOnInsert("videoId", parts[0])
+        .setOnInsert("granularity", granularity)
+        .setOnInsert("bucketStart", Date.from(start));
+    if (granularity == RollupGranularity.MINUTE) {
+      update.setOnInsert("expireAt", Date.from(start.plus(Duration.ofHours(minuteRetentionHours))));
+    }
+    return update;
+  }
+
+  private static String rollupId(String videoId, RollupGranularity granularity, Instant start) {
+    return videoId + ":" + granularity + ":" + start.toEpochMilli();
+  }
+
+  private record MinuteKey(String videoId, Instant minute) {
+  }
+
+  private record Contribution(MinuteCounter counter, int level, long views, long plays) {
+  }
+
+  private static class MinuteCounter {
+    private final LongAdder views = new LongAdder();
+    private final LongAdder plays = new LongAdder();
+    // Lo ya escrito en cada nivel (índice = RollupGranularity.ordinal()); solo los modifica flush()
+    private final long[] flushedViews = new long[RollupGranularity.values().length];
+    private final long[] flushedPlays = new long[RollupGranularity.values().length];
+
+    private boolean isFlushed(long views, long plays) {
+      for (int level = 0; level < flushedViews.length; level++) {
+        if (flushedViews[level] != views || flushedPlays[level] != plays) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
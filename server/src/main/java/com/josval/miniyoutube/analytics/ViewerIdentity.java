@@ -0,0 +1,42 @@
+package com.josval.miniyoutube.analytics;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Clave de espectador para el conteo de únicos
+ * Autenticado: su ID. Anónimo: el header X-Session-Id del cliente o, si no viene, IP + User-Agent
+ * Solo se usa para alimentar el HyperLogLog, nunca se guarda
+ */
+public final class ViewerIdentity {
+
+  public static final String SESSION_HEADER = "X-Session-Id";
+  private static final int MAX_SESSION_LENGTH = 128;
+
+  private ViewerIdentity() {
+  }
+
+  public static String of(String userId, HttpServletRequest request) {
+    if (userId != null) {
+      return "u:" + userId;
+    }
+    if (request == null) {
+      return null;
+    }
+
+    String sessionId = request.getHeader(SESSION_HEADER);
+    if (sessionId != null && !sessionId.isBlank() && sessionId.length() <= MAX_SESSION_LENGTH) {
+      return "s:" + sessionId;
+    }
+
+    String userAgent = request.getHeader("User-Agent");
+    return "f:" + clientIp(request) + "|" + (userAgent != null ? userAgent : "");
+  }
+
+  private static String clientIp(HttpServletRequest request) {
+    String forwarded = request.getHeader("X-Forwarded-For");
+    if (forwarded != null && !forwarded.isBlank()) {
+      return forwarded.split(",")[0].trim();
+    }
+    return request.getRemoteAddr();
+  }
+}
@@ -0,0 +1,36 @@
+package com.josval.miniyoutube.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.util.Date;
+
+/**
+ * Registros HyperLogLog de espectadores únicos de un video (por día UTC o acumulado)
+ * Cada nodo une sus registros con el documento usando la versión como control optimista
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "viewer_sketches")
+public class ViewerSketch {
+  @MongoId
+  private String id;  // {videoId}:{yyyy-MM-dd} o {videoId}:all
+
+  @Indexed
+  private String videoId;
+
+  private String day;  // null en el acumulado
+  private byte[] registers;
+  private Date updatedAt;
+
+  @Version
+  private Long version;
+}
@@ -0,0 +1,8 @@
+package com.josval.miniyoutube.analytics;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ViewerSketchRepository extends MongoRepository<ViewerSketch, String> {
+}
@@ -0,0 +1,28 @@
+package com.josval.miniyoutube.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UniqueViewersResponse {
+  private String videoId;
+  private long totalUniqueViewers;  // Estimación acumulada desde que se registran espectadores
+  private long rangeUniqueViewers;  // Espectadores distintos en todo el rango (no es la suma de los días)
+  private List<DailyViewers> daily;
+
+  @Getter
+  @Setter
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class DailyViewers {
+    private String day;
+    private long uniqueViewers;
+  }
+}
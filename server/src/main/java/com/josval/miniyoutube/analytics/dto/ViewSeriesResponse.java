@@ -0,0 +1,32 @@
+package com.josval.miniyoutube.analytics.dto;
+
+import com.josval.miniyoutube.analytics.enums.RollupGranularity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ViewSeriesResponse {
+  private String videoId;
+  private RollupGranularity granularity;
+  private long totalViews;
+  private long totalPlays;
+  private List<Point> points;  // Un punto por bucket del rango, con ceros donde no hubo vistas
+
+  @Getter
+  @Setter
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class Point {
+    private Date bucketStart;
+    private long views;
+    private long plays;
+  }
+}
@@ -0,0 +1,31 @@
+package com.josval.miniyoutube.analytics.enums;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Tamaño de los buckets de vistas agregadas (alineados a UTC)
+ */
+public enum RollupGranularity {
+  MINUTE(Duration.ofMinutes(1)),
+  HOUR(Duration.ofHours(1)),
+  DAY(Duration.ofDays(1));
+
+  private final Duration size;
+
+  RollupGranularity(Duration size) {
+    this.size = size;
+  }
+
+  public Duration getSize() {
+    return size;
+  }
+
+  /**
+   * Inicio del bucket que contiene el instante
+   */
+  public Instant bucketStart(Instant instant) {
+    long millis = size.toMillis();
+    return Instant.ofEpochMilli(Math.floorDiv(instant.toEpochMilli(), millis) * millis);
+  }
+}
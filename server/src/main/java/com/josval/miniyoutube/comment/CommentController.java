@@ -14,6 +14,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/comments")
 @RequiredArgsConstructor
@@ -41,6 +43,26 @@ public class CommentController {
     }
   }
 
+  @GetMapping("/{commentId}/thread")
+  @Operation(summary = "Hilo completo de un comentario",
+      description = "El comentario y todas sus respuestas anidadas en orden cronológico (máximo 500)")
+  public ResponseEntity<List<CommentResponse>> getThread(
+      @Parameter(description = "ID del comentario") @PathVariable String commentId,
+      @Parameter(description = "Máximo de respuestas") @RequestParam(defaultValue = "200") int limit) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    String userEmail = null;
+    if (authentication != null && authentication.isAuthenticated()
+        && !"anonymousUser".equals(authentication.getPrincipal())) {
+      userEmail = authentication.getName();
+    }
+
+    try {
+      return ResponseEntity.ok(commentService.getThread(commentId, userEmail, limit));
+    } catch (RuntimeException e) {
+      return ResponseEntity.status(403).build();
+    }
+  }
+
   @GetMapping("/{commentId}")
   public ResponseEntity<CommentResponse> getComment(
       @Parameter(description = "ID del comentario") @PathVariable String commentId) {
@@ -0,0 +1,81 @@
+package com.josval.miniyoutube.comment;
+
+import com.josval.miniyoutube.comment.enums.CommentSort;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Token de continuación para comentarios principales
+ * Se serializa como base64url de "N|createdAtMillis:id" (más recientes) o "T|score:id" (mejores)
+ */
+@Getter
+@AllArgsConstructor
+public class CommentCursor {
+
+  private final CommentSort sort;
+  private final double value;
+  private final String id;
+
+  public static CommentCursor of(CommentSort sort, CommentEntity comment) {
+    double value = sort == CommentSort.TOP
+        ? scoreOf(comment)
+        : comment.getCreatedAt().getTime();
+    return new CommentCursor(sort, value, comment.getId());
+  }
+
+  /**
+   * Condición "posterior al cursor" en orden (campo desc, _id desc)
+   */
+  public Criteria afterCriteria() {
+    Object idValue = ObjectId.isValid(id) ? new ObjectId(id) : id;
+    if (sort == CommentSort.TOP) {
+      return new Criteria().orOperator(
+          Criteria.where("score").lt(value),
+          Criteria.where("score").is(value).and("_id").lt(idValue));
+    }
+    Date createdAt = new Date((long) value);
+    return new Criteria().orOperator(
+        Criteria.where("createdAt").lt(createdAt),
+        Criteria.where("createdAt").is(createdAt).and("_id").lt(idValue));
+  }
+
+  public String encode() {
+    String position = sort == CommentSort.TOP ? Double.toString(value) : Long.toString((long) value);
+    String raw = sort.name().charAt(0) + "|" + position + ":" + id;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodificar un token del orden indicado; null o vacío significa primera página
+   */
+  public static CommentCursor decode(String token, CommentSort sort) {
+    if (token == null || token.isBlank()) {
+      return null;
+    }
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      if (raw.charAt(0) != sort.name().charAt(0) || raw.charAt(1) != '|') {
+        throw new IllegalArgumentException("Orden distinto");
+      }
+      int separator = raw.indexOf(':');
+      return new CommentCursor(sort, Double.parseDouble(raw.substring(2, separator)), raw.substring(separator + 1));
+    } catch (RuntimeException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor inválido");
+    }
+  }
+
+  private static double scoreOf(CommentEntity comment) {
+    if (comment.getScore() != null) {
+      return comment.getScore();
+    }
+    return CommentScore.compute(comment.getCreatedAt(), comment.getRepliesCount() != null ? comment.getRepliesCount() : 0);
+  }
+}
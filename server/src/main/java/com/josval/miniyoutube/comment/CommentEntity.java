@@ -1,14 +1,17 @@
 package com.josval.miniyoutube.comment;
 
 import java.util.Date;
+import java.util.List;
 
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.MongoId;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.josval.miniyoutube.user.UserEntity;
 import com.josval.miniyoutube.video.VideoEntity;
 
@@ -24,23 +27,70 @@ import lombok.Setter;
 @Document(collection = "comentarios")
 @CompoundIndexes({
     @CompoundIndex(name = "video_created_idx", def = "{'video': 1, 'createdAt': -1}"),
-    @CompoundIndex(name = "parent_created_idx", def = "{'parent': 1, 'createdAt': 1}")
+    @CompoundIndex(name = "parent_created_idx", def = "{'parent': 1, 'createdAt': 1}"),
+    @CompoundIndex(name = "ancestors_created_idx", def = "{'ancestors': 1, 'createdAt': 1}"),
+    @CompoundIndex(name = "video_parent_score_idx", def = "{'video': 1, 'parent': 1, 'score': -1, '_id': -1}")
 })
 public class CommentEntity {
   @MongoId
   private String id;
 
-  @DBRef
+  @JsonIgnore
+  @DBRef(lazy = true)
   private VideoEntity video;
 
-  @DBRef
+  @JsonIgnore
+  @DBRef(lazy = true)
   private UserEntity user;
 
   private String body;
 
+  @JsonIgnore
   @DBRef(lazy = true)
   private CommentEntity parent;
 
   @CreatedDate
   private Date createdAt;
+
+  private List<String> ancestors;  // IDs desde el comentario raíz hasta el padre (materialized path)
+
+  private Long repliesCount;  // Respuestas directas, mantenido con $inc y reconciliado por CommentMaintenanceService
+  private Double score;  // Puntuación para "mejores comentarios" (ver CommentScore), se recalcula con repliesCount
+
+  /**
+   * Profundidad en el hilo (0 = comentario principal)
+   */
+  public int getDepth() {
+    return ancestors != null ? ancestors.size() : 0;
+  }
+
+  /**
+   * ID del video sin resolver la referencia lazy
+   */
+  public String getVideoId() {
+    if (video instanceof LazyLoadingProxy proxy) {
+      return proxy.toDBRef().getId().toString();
+    }
+    return video != null ? video.getId() : null;
+  }
+
+  /**
+   * ID del autor sin resolver la referencia lazy
+   */
+  public String getUserId() {
+    if (user instanceof LazyLoadingProxy proxy) {
+      return proxy.toDBRef().getId().toString();
+    }
+    return user != null ? user.getId() : null;
+  }
+
+  /**
+   * ID del comentario padre sin resolver la referencia lazy
+   */
+  public String getParentId() {
+    if (parent instanceof LazyLoadingProxy proxy) {
+      return proxy.toDBRef().getId().toString();
+    }
+    return parent != null ? parent.getId() : null;
+  }
 }
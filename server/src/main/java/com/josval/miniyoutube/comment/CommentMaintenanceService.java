@@ -0,0 +1,186 @@
+package com.josval.miniyoutube.comment;
+
+import com.mongodb.DBRef;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Mantenimiento de los campos materializados de comentarios
+ * - ancestors: completar la ruta de los comentarios que no la tienen (anteriores a la migración o creados desde admin)
+ * - repliesCount y score: reconciliar con las respuestas reales (corrige la deriva por ediciones desde el panel
+ *   de administración o fallos entre el guardado y el $inc) y completar la puntuación que falte
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CommentMaintenanceService {
+
+  private static final String COLLECTION = "comentarios";
+  private static final int BACKFILL_BATCH = 1000;
+
+  private final MongoTemplate mongoTemplate;
+
+  @Async
+  @EventListener(ApplicationReadyEvent.class)
+  public void reconcileOnStartup() {
+    backfillAncestors();
+    reconcileRepliesCount();
+  }
+
+  @Scheduled(
+      fixedDelayString = "${comment.replies.repair-ms:86400000}",
+      initialDelayString = "${comment.replies.repair-ms:86400000}")
+  public void reconcilePeriodically() {
+    backfillAncestors();
+    reconcileRepliesCount();
+  }
+
+  /**
+   * Completar ancestors nivel a nivel: un comentario se resuelve cuando su padre ya tiene ruta
+   */
+  public synchronized void backfillAncestors() {
+    try {
+      long completed = mongoTemplate.updateMulti(
+          Query.query(Criteria.where("ancestors").exists(false).and("parent").is(null)),
+          new Update().set("ancestors", List.of()), COLLECTION).getModifiedCount();
+
+      while (true) {
+        Query pending = Query.query(Criteria.where("ancestors").exists(false))
+            .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+            .limit(BACKFILL_BATCH);
+        pending.fields().include("_id", "parent");
+        List<Document> batch = mongoTemplate.find(pending, Document.class, COLLECTION);
+        if (batch.isEmpty()) {
+          break;
+        }
+
+        Map<String, Object> parentIds = new HashMap<>();
+        for (Document comment : batch) {
+          Object parentId = rawRefId(comment.get("parent"));
+          if (parentId != null) {
+            parentIds.put(parentId.toString(), parentId);
+          }
+        }
+        Query parentsQuery = Query.query(Criteria.where("_id").in(parentIds.values()));
+        parentsQuery.fields().include("_id", "ancestors");
+        Map<String, Document> parents = new HashMap<>();
+        for (Document parent : mongoTemplate.find(parentsQuery, Document.class, COLLECTION)) {
+          parents.put(parent.get("_id").toString(), parent);
+        }
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+        int resolved = 0;
+        for (Document comment : batch) {
+          String parentId = refId(comment.get("parent"));
+          Document parent = parentId != null ? parents.get(parentId) : null;
+          List<String> path;
+          if (parentId == null || parent == null) {
+            // Padre inexistente (respuesta huérfana): la ruta conocida termina en el padre
+            path = parentId != null ? List.of(parentId) : List.of();
+          } else if (parent.get("ancestors") instanceof List<?> parentPath) {
+            path = new ArrayList<>();
+            parentPath.forEach(id -> path.add(id.toString()));
+            path.add(parentId);
+          } else {
+            continue;  // El padre se resuelve en esta pasada; el hijo en la siguiente
+          }
+          ops.updateOne(Query.query(Criteria.where("_id").is(comment.get("_id"))), new Update().set("ancestors", path));
+          resolved++;
+        }
+
+        if (resolved == 0) {
+          log.warn("Quedan {} comentarios sin ruta que no se pudieron resolver", batch.size());
+          break;
+        }
+        ops.execute();
+        completed += resolved;
+      }
+
+      if (completed > 0) {
+        log.info("Rutas de comentarios completadas: {}", completed);
+      }
+    } catch (Exception e) {
+      log.error("Error completando rutas de comentarios: {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Contar respuestas por padre con una agregación y corregir solo los comentarios que difieren
+   * Un $inc concurrente puede pisarse entre la lectura y la corrección; se arregla en la siguiente pasada
+   */
+  public synchronized void reconcileRepliesCount() {
+    try {
+      Map<String, Long> actual = new HashMap<>();
+      Aggregation aggregation = Aggregation.newAggregation(
+          Aggregation.match(Criteria.where("parent").ne(null)),
+          Aggregation.group("parent").count().as("count"));
+      for (Document group : mongoTemplate.aggregate(aggregation, COLLECTION, Document.class)) {
+        String parentId = refId(group.get("_id"));
+        if (parentId != null) {
+          actual.put(parentId, ((Number) group.get("count")).longValue());
+        }
+      }
+
+      BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CommentEntity.class);
+      int fixes = 0;
+
+      Query all = new Query();
+      all.fields().include("_id", "repliesCount", "score", "createdAt");
+      try (Stream<Document> comments = mongoTemplate.stream(all, Document.class, COLLECTION)) {
+        for (Document comment : (Iterable<Document>) comments::iterator) {
+          String id = comment.get("_id").toString();
+          Number current = (Number) comment.get("repliesCount");
+          long expected = actual.getOrDefault(id, 0L);
+          if (current == null || current.longValue() != expected || comment.get("score") == null) {
+            // La puntuación depende de repliesCount: se recalcula junto con la corrección
+            ops.updateOne(Query.query(Criteria.where("_id").is(id)), new Update()
+                .set("repliesCount", expected)
+                .set("score", CommentScore.compute(comment.getDate("createdAt"), expected)));
+            fixes++;
+          }
+        }
+      }
+
+      if (fixes > 0) {
+        ops.execute();
+        log.warn("Contadores de respuestas corregidos: {}", fixes);
+      }
+    } catch (Exception e) {
+      log.error("Error reconciliando contadores de respuestas: {}", e.getMessage(), e);
+    }
+  }
+
+  private String refId(Object ref) {
+    Object id = rawRefId(ref);
+    return id != null ? id.toString() : null;
+  }
+
+  private Object rawRefId(Object ref) {
+    if (ref instanceof DBRef dbRef) {
+      return dbRef.getId();
+    }
+    if (ref instanceof Document document) {
+      return document.get("$id");
+    }
+    return null;
+  }
+}
@@ -0,0 +1,63 @@
+package com.josval.miniyoutube.comment;
+
+import com.josval.miniyoutube.comment.dto.CommentResponse;
+import com.josval.miniyoutube.video.dto.CursorPage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché en memoria de la primera página de comentarios por video (LRU acotado + TTL)
+ * Se invalida al crear, editar o eliminar un comentario del video y al editar o eliminar el video en este nodo;
+ * en otros nodos (o tras ediciones de comentarios desde admin) la página se renueva al vencer el TTL
+ */
+@Component
+public class CommentPageCache {
+
+  @Value("${comment.cache.max-videos:1000}")
+  private int maxVideos;
+
+  @Value("${comment.cache.ttl-ms:30000}")
+  private long ttlMs;
+
+  // Orden de acceso: el video menos usado sale primero al superar maxVideos
+  private final Map<String, Map<String, Entry>> byVideo = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Map<String, Entry>> eldest) {
+      return size() > maxVideos;
+    }
+  };
+
+  /**
+   * Página cacheada de un video para una variante (orden y tamaño), o null si no hay o venció
+   */
+  public synchronized CursorPage<CommentResponse> get(String videoId, String variant) {
+    Map<String, Entry> pages = byVideo.get(videoId);
+    Entry entry = pages != null ? pages.get(variant) : null;
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expiresAt() < System.currentTimeMillis()) {
+      pages.remove(variant);
+      return null;
+    }
+    return entry.page();
+  }
+
+  public synchronized void put(String videoId, String variant, CursorPage<CommentResponse> page) {
+    byVideo.computeIfAbsent(videoId, id -> new HashMap<>())
+        .put(variant, new Entry(page, System.currentTimeMillis() + ttlMs));
+  }
+
+  public synchronized void invalidate(String videoId) {
+    if (videoId != null) {
+      byVideo.remove(videoId);
+    }
+  }
+
+  private record Entry(CursorPage<CommentResponse> page, long expiresAt) {
+  }
+}
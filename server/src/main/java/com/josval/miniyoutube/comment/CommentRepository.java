@@ -6,8 +6,6 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
-
 @Repository
 public interface CommentRepository extends MongoRepository<CommentEntity, String> {
 
@@ -17,12 +15,6 @@ public interface CommentRepository extends MongoRepository<CommentEntity, String
   // Listar respuestas a un comentario (paginado para scroll infinito)
   Page<CommentEntity> findByParentOrderByCreatedAtAsc(CommentEntity parent, Pageable pageable);
 
-  // Listar todas las respuestas de un comentario (para eliminación recursiva)
-  List<CommentEntity> findByParent(CommentEntity parent);
-
   // Contar comentarios de un video (solo principales)
   long countByVideoAndParentIsNull(VideoEntity video);
-
-  // Contar respuestas de un comentario
-  long countByParent(CommentEntity parent);
 }
@@ -0,0 +1,35 @@
+package com.josval.miniyoutube.comment;
+
+import org.bson.Document;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Puntuación de "mejores comentarios": recencia + log2(1 + respuestas)
+ * Duplicar las respuestas equivale a ser RECENCY_MS más reciente; como la recencia está en la propia
+ * puntuación, no hace falta decaerla con el tiempo (el orden solo cambia con nuevas respuestas)
+ */
+public final class CommentScore {
+
+  public static final long RECENCY_MS = 12 * 60 * 60 * 1000L;
+
+  private CommentScore() {
+  }
+
+  public static double compute(Date createdAt, long repliesCount) {
+    long created = createdAt != null ? createdAt.getTime() : 0;
+    return (double) created / RECENCY_MS + Math.log1p(Math.max(0, repliesCount)) / Math.log(2);
+  }
+
+  /**
+   * La misma fórmula como expresión de agregación, para recalcular en un update con pipeline
+   */
+  public static Document expression() {
+    Document recency = new Document("$divide", List.of(
+        new Document("$toLong", new Document("$ifNull", List.of("$createdAt", new Date(0)))), (double) RECENCY_MS));
+    Document replies = new Document("$log", List.of(
+        new Document("$add", List.of(1, new Document("$max", List.of(0, new Document("$ifNull", List.of("$repliesCount", 0)))))), 2));
+    return new Document("$add", List.of(recency, replies));
+  }
+}
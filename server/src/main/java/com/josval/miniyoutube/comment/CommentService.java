@@ -3,30 +3,51 @@ package com.josval.miniyoutube.comment;
 import com.josval.miniyoutube.comment.dto.CommentResponse;
 import com.josval.miniyoutube.comment.dto.CreateCommentRequest;
 import com.josval.miniyoutube.comment.dto.UpdateCommentRequest;
+import com.josval.miniyoutube.comment.enums.CommentSort;
+import com.josval.miniyoutube.service.DbRefBatchLoader;
+import com.josval.miniyoutube.user.UserCache;
 import com.josval.miniyoutube.user.UserEntity;
-import com.josval.miniyoutube.user.UserRepository;
+import com.josval.miniyoutube.video.TrendingService;
 import com.josval.miniyoutube.video.VideoEntity;
+import com.josval.miniyoutube.video.VideoEventBroadcaster;
 import com.josval.miniyoutube.video.VideoRepository;
+import com.josval.miniyoutube.video.dto.CursorPage;
 import com.josval.miniyoutube.video.enums.VideoPrivacyStatus;
+import com.mongodb.client.result.DeleteResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CommentService {
 
+  private static final int MAX_THREAD_SIZE = 500;
+  private static final int MAX_PAGE_SIZE = 100;
+
   private final CommentRepository commentRepository;
   private final VideoRepository videoRepository;
-  private final UserRepository userRepository;
+  private final UserCache userCache;
+  private final DbRefBatchLoader dbRefBatchLoader;
+  private final TrendingService trendingService;
+  private final MongoTemplate mongoTemplate;
+  private final CommentPageCache commentPageCache;
+  private final VideoEventBroadcaster videoEventBroadcaster;
 
   /**
    * Crear un comentario en un video
@@ -35,7 +56,7 @@ public class CommentService {
     VideoEntity video = videoRepository.findById(videoId)
         .orElseThrow(() -> new RuntimeException("Video no encontrado"));
 
-    UserEntity user = userRepository.findByEmail(userEmail)
+    UserEntity user = userCache.findByEmail(userEmail)
         .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
     if (!canUserAccessVideo(video, user)) {
@@ -49,7 +70,7 @@ public class CommentService {
           .orElseThrow(() -> new RuntimeException("Comentario padre no encontrado"));
 
       // Validar que el comentario padre pertenece al mismo video
-      if (!parent.getVideo().getId().equals(videoId)) {
+      if (!videoId.equals(parent.getVideoId())) {
         throw new RuntimeException("El comentario padre no pertenece a este video");
       }
     }
@@ -60,13 +81,25 @@ public class CommentService {
     comment.setUser(user);
     comment.setBody(request.getBody());
     comment.setParent(parent);
+    comment.setAncestors(parent != null ? ancestorsOf(parent) : new ArrayList<>());
     comment.setCreatedAt(new Date());
+    comment.setRepliesCount(0L);
+    comment.setScore(CommentScore.compute(comment.getCreatedAt(), 0));
 
     comment = commentRepository.save(comment);
+    if (parent != null) {
+      adjustRepliesCount(parent.getId(), 1);
+    }
+    commentPageCache.invalidate(videoId);
+    if (video.getPrivacyStatus() == VideoPrivacyStatus.PUBLIC) {
+      trendingService.onComment(videoId);
+    }
 
     log.info("Comentario creado con ID: {} para el video: {}", comment.getId(), videoId);
 
-    return mapToResponse(comment);
+    CommentResponse response = mapToResponse(comment);
+    videoEventBroadcaster.publishComment(videoId, response);
+    return response;
   }
 
   /**
@@ -79,7 +112,7 @@ public class CommentService {
 
     UserEntity user = null;
     if (userEmail != null) {
-      user = userRepository.findByEmail(userEmail).orElse(null);
+      user = userCache.findByEmail(userEmail).orElse(null);
     }
 
     if (!canUserAccessVideo(video, user)) {
@@ -90,7 +123,69 @@ public class CommentService {
 
     Page<CommentEntity> comments = commentRepository.findByVideoAndParentIsNull(video, pageable);
 
-    return comments.map(this::mapToResponse);
+    return mapPage(comments);
+  }
+
+  /**
+   * Listar comentarios principales paginando por cursor, por más recientes o por mejores
+   * La primera página de videos públicos y no listados se sirve desde la caché en memoria,
+   * siempre después de cargar el video y validar el acceso
+   */
+  public CursorPage<CommentResponse> listVideoCommentsByCursor(String videoId, String userEmail, CommentSort sort,
+      String cursor, int size) {
+    CommentSort order = sort != null ? sort : CommentSort.NEWEST;
+    CommentCursor after = CommentCursor.decode(cursor, order);
+    int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    String variant = order + ":" + pageSize;
+
+    VideoEntity video = videoRepository.findById(videoId)
+        .orElseThrow(() -> new RuntimeException("Video no encontrado"));
+
+    UserEntity user = null;
+    if (userEmail != null) {
+      user = userCache.findByEmail(userEmail).orElse(null);
+    }
+
+    if (!canUserAccessVideo(video, user)) {
+      throw new RuntimeException("No tienes permiso para ver los comentarios de este video");
+    }
+
+    // La caché se consulta después del control de acceso: un video que pasó a privado no se sirve desde ella
+    boolean cacheable = after == null && video.getPrivacyStatus() != VideoPrivacyStatus.PRIVATE;
+    if (cacheable) {
+      CursorPage<CommentResponse> cached = commentPageCache.get(videoId, variant);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    Criteria criteria = Criteria.where("video").is(video).and("parent").is(null);
+    if (after != null) {
+      criteria = new Criteria().andOperator(criteria, after.afterCriteria());
+    }
+    String sortField = order == CommentSort.TOP ? "score" : "createdAt";
+    Query query = Query.query(criteria)
+        .with(Sort.by(Sort.Order.desc(sortField), Sort.Order.desc("_id")))
+        .limit(pageSize + 1);
+    List<CommentEntity> comments = mongoTemplate.find(query, CommentEntity.class);
+
+    boolean hasMore = comments.size() > pageSize;
+    if (hasMore) {
+      comments = comments.subList(0, pageSize);
+    }
+    Map<String, UserEntity> authors = dbRefBatchLoader.batch().load(UserEntity.class,
+        comments.stream().map(CommentEntity::getUser).toList());
+    List<CommentResponse> content = comments.stream()
+        .map(comment -> mapToResponse(comment, authors.get(comment.getUserId())))
+        .toList();
+    String nextCursor = hasMore ? CommentCursor.of(order, comments.get(comments.size() - 1)).encode() : null;
+    CursorPage<CommentResponse> page = new CursorPage<>(content, nextCursor, hasMore, null);
+
+    // Los videos privados no se cachean: el acceso depende de quién pide
+    if (cacheable) {
+      commentPageCache.put(videoId, variant, page);
+    }
+    return page;
   }
 
   /**
@@ -103,7 +198,7 @@ public class CommentService {
 
     UserEntity user = null;
     if (userEmail != null) {
-      user = userRepository.findByEmail(userEmail).orElse(null);
+      user = userCache.findByEmail(userEmail).orElse(null);
     }
 
     if (!canUserAccessVideo(parent.getVideo(), user)) {
@@ -114,7 +209,38 @@ public class CommentService {
 
     Page<CommentEntity> replies = commentRepository.findByParentOrderByCreatedAtAsc(parent, pageable);
 
-    return replies.map(this::mapToResponse);
+    return mapPage(replies);
+  }
+
+  /**
+   * Cargar un hilo completo (el comentario y todas sus respuestas anidadas) con una sola consulta por rango
+   * sobre el índice de ancestors, en orden cronológico
+   */
+  public List<CommentResponse> getThread(String commentId, String userEmail, int limit) {
+    CommentEntity root = commentRepository.findById(commentId)
+        .orElseThrow(() -> new RuntimeException("Comentario no encontrado"));
+
+    UserEntity user = null;
+    if (userEmail != null) {
+      user = userCache.findByEmail(userEmail).orElse(null);
+    }
+
+    if (!canUserAccessVideo(root.getVideo(), user)) {
+      throw new RuntimeException("No tienes permiso para ver los comentarios de este video");
+    }
+
+    Query query = Query.query(Criteria.where("ancestors").is(commentId))
+        .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+        .limit(Math.max(1, Math.min(limit, MAX_THREAD_SIZE)));
+    List<CommentEntity> thread = new ArrayList<>();
+    thread.add(root);
+    thread.addAll(mongoTemplate.find(query, CommentEntity.class));
+
+    Map<String, UserEntity> authors = dbRefBatchLoader.batch().load(UserEntity.class,
+        thread.stream().map(CommentEntity::getUser).toList());
+    return thread.stream()
+        .map(comment -> mapToResponse(comment, authors.get(comment.getUserId())))
+        .toList();
   }
 
   /**
@@ -134,16 +260,19 @@ public class CommentService {
     CommentEntity comment = commentRepository.findById(commentId)
         .orElseThrow(() -> new RuntimeException("Comentario no encontrado"));
 
-    UserEntity user = userRepository.findByEmail(userEmail)
+    UserEntity user = userCache.findByEmail(userEmail)
         .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
     // Verificar que el usuario sea el dueño del comentario
-    if (!comment.getUser().getId().equals(user.getId())) {
+    if (!user.getId().equals(comment.getUserId())) {
       throw new RuntimeException("No tienes permiso para editar este comentario");
     }
 
+    // Solo el cuerpo: un save() completo pisaría repliesCount/score cambiados en paralelo
     comment.setBody(request.getBody());
-    comment = commentRepository.save(comment);
+    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(commentId)),
+        new Update().set("body", request.getBody()), CommentEntity.class);
+    commentPageCache.invalidate(comment.getVideoId());
 
     log.info("Comentario actualizado: {}", commentId);
 
@@ -158,58 +287,105 @@ public class CommentService {
     CommentEntity comment = commentRepository.findById(commentId)
         .orElseThrow(() -> new RuntimeException("Comentario no encontrado"));
 
-    UserEntity user = userRepository.findByEmail(userEmail)
+    UserEntity user = userCache.findByEmail(userEmail)
         .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
     // Verificar que el usuario sea el dueño del comentario
-    if (!comment.getUser().getId().equals(user.getId())) {
+    if (!user.getId().equals(comment.getUserId())) {
       throw new RuntimeException("No tienes permiso para eliminar este comentario");
     }
 
     // Eliminar el comentario y todas sus respuestas recursivamente
     deleteCommentAndReplies(comment);
+    if (comment.getParentId() != null) {
+      adjustRepliesCount(comment.getParentId(), -1);
+    }
+    commentPageCache.invalidate(comment.getVideoId());
 
     log.info("Comentario eliminado: {} (con todas sus respuestas)", commentId);
   }
 
   /**
-   * Eliminar un comentario y todas sus respuestas recursivamente
+   * Eliminar un comentario y todo su subárbol con un único deleteMany sobre ancestors
    */
   private void deleteCommentAndReplies(CommentEntity comment) {
-    // Obtener todas las respuestas directas
-    List<CommentEntity> replies = commentRepository.findByParent(comment);
+    DeleteResult result = mongoTemplate.remove(Query.query(new Criteria().orOperator(
+        Criteria.where("_id").is(comment.getId()),
+        Criteria.where("ancestors").is(comment.getId()))), CommentEntity.class);
+    log.debug("Subárbol del comentario {} eliminado ({} documentos)", comment.getId(), result.getDeletedCount());
+  }
 
-    // Eliminar recursivamente todas las respuestas
-    for (CommentEntity reply : replies) {
-      deleteCommentAndReplies(reply);
+  /**
+   * Ruta de un hijo del comentario: sus ancestros más él mismo
+   * Si el comentario aún no tiene la ruta (anterior a la migración) se reconstruye subiendo por los padres
+   */
+  private List<String> ancestorsOf(CommentEntity parent) {
+    List<String> path;
+    if (parent.getAncestors() != null) {
+      path = new ArrayList<>(parent.getAncestors());
+    } else {
+      path = new ArrayList<>();
+      String current = parent.getParentId();
+      while (current != null && !path.contains(current)) {
+        path.add(0, current);
+        current = commentRepository.findById(current).map(CommentEntity::getParentId).orElse(null);
+      }
     }
+    path.add(parent.getId());
+    return path;
+  }
 
-    // Eliminar el comentario
-    commentRepository.delete(comment);
+  /**
+   * Ajustar el contador de respuestas del padre (sin bajar de cero) y recalcular su puntuación
+   * en un único update con pipeline, así dos respuestas simultáneas no dejan la puntuación desfasada
+   * Va directo al driver (sin QueryMapper): el _id se pasa tal como lo guarda Spring, como String
+   */
+  private void adjustRepliesCount(String parentId, int delta) {
+    Document replies = new Document("$max", List.of(0,
+        new Document("$add", List.of(new Document("$ifNull", List.of("$repliesCount", 0)), delta))));
+    mongoTemplate.getCollection(mongoTemplate.getCollectionName(CommentEntity.class)).updateOne(
+        new Document("_id", parentId),
+        List.of(
+            new Document("$set", new Document("repliesCount", replies)),
+            new Document("$set", new Document("score", CommentScore.expression()))));
+  }
+
+  /**
+   * Mapear una página de comentarios resolviendo todos los autores con una sola consulta
+   */
+  private Page<CommentResponse> mapPage(Page<CommentEntity> comments) {
+    Map<String, UserEntity> authors = dbRefBatchLoader.batch().load(UserEntity.class,
+        comments.getContent().stream().map(CommentEntity::getUser).toList());
+    return comments.map(comment -> mapToResponse(comment, authors.get(comment.getUserId())));
+  }
+
+  private CommentResponse mapToResponse(CommentEntity comment) {
+    UserEntity author = dbRefBatchLoader.batch().load(UserEntity.class, List.of(comment.getUser()))
+        .get(comment.getUserId());
+    return mapToResponse(comment, author);
   }
 
   /**
    * Mapear CommentEntity a CommentResponse
    * Incluye el contador de respuestas
    */
-  private CommentResponse mapToResponse(CommentEntity comment) {
+  private CommentResponse mapToResponse(CommentEntity comment, UserEntity author) {
     CommentResponse response = new CommentResponse();
     response.setId(comment.getId());
-    response.setVideoId(comment.getVideo().getId());
-    response.setUserId(comment.getUser().getId());
-    response.setUsername(comment.getUser().getUsername());
-    response.setUserChannelName(comment.getUser().getChannelName());
-    response.setUserAvatarUrl(comment.getUser().getAvatarURL());
+    response.setVideoId(comment.getVideoId());
+    response.setUserId(comment.getUserId());
+    if (author != null) {
+      response.setUsername(author.getUsername());
+      response.setUserChannelName(author.getChannelName());
+      response.setUserAvatarUrl(author.getAvatarURL());
+    }
     response.setBody(comment.getBody());
-    response.setParentId(comment.getParent() != null ? comment.getParent().getId() : null);
+    response.setParentId(comment.getParentId());
     response.setCreatedAt(comment.getCreatedAt());
 
-    // Contar respuestas solo si es un comentario principal
-    if (comment.getParent() == null) {
-      response.setRepliesCount(commentRepository.countByParent(comment));
-    } else {
-      response.setRepliesCount(0L);
-    }
+    // Contador materializado: no hace falta contar las respuestas por fila
+    response.setRepliesCount(comment.getRepliesCount() != null ? comment.getRepliesCount() : 0L);
+    response.setDepth(comment.getDepth());
 
     return response;
   }
@@ -220,6 +396,6 @@ public class CommentService {
       return true;
     }
 
-    return user != null && video.getCreator().getId().equals(user.getId());
+    return user != null && user.getId().equals(video.getCreatorId());
   }
 }
@@ -45,4 +45,7 @@ public class CommentResponse {
 
   @Schema(description = "Número de respuestas a este comentario", example = "5")
   private Long repliesCount;
+
+  @Schema(description = "Profundidad en el hilo (0 = comentario principal)", example = "1")
+  private Integer depth;
 }
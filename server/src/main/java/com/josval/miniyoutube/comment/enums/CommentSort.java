@@ -0,0 +1,9 @@
+package com.josval.miniyoutube.comment.enums;
+
+/**
+ * Orden de los comentarios principales de un video
+ */
+public enum CommentSort {
+  NEWEST,  // Más recientes primero
+  TOP      // Mayor puntuación (respuestas y recencia) primero
+}
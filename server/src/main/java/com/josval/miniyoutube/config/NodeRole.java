@@ -0,0 +1,23 @@
+package com.josval.miniyoutube.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Rol del nodo dentro del despliegue
+ * Los nodos API (con servidor web) reciben el tráfico de los espectadores; los nodos worker
+ * (perfil worker, spring.main.web-application-type=none) solo transcodifican, así que no deben
+ * restaurar ni escribir el estado que se deriva de ese tráfico (tendencias, filtro de vistas, buffers)
+ */
+@Component
+@RequiredArgsConstructor
+public class NodeRole {
+
+  private final ApplicationContext applicationContext;
+
+  public boolean servesTraffic() {
+    return applicationContext instanceof WebApplicationContext;
+  }
+}
@@ -110,6 +110,8 @@ public class StreamingController {
       return "image/jpeg";
     } else if (path.endsWith(".png")) {
       return "image/png";
+    } else if (path.endsWith(".vtt")) {
+      return "text/vtt";
     }
     return "application/octet-stream";
   }
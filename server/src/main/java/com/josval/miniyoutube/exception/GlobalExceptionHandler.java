@@ -4,6 +4,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -36,6 +37,13 @@ public class GlobalExceptionHandler {
         .body(Map.of("error", "Dato duplicado (email/username)"));
   }
 
+  @ExceptionHandler(TranscodingQueueFullException.class)
+  public ResponseEntity<Map<String, String>> handleQueueFull(TranscodingQueueFullException ex) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+        .body(Map.of("error", ex.getMessage()));
+  }
+
   @ExceptionHandler(ResponseStatusException.class)
   public ResponseEntity<Map<String, String>> handleResponseStatus(ResponseStatusException ex) {
     log.warn("Error de solicitud: {}", ex.getReason());
@@ -0,0 +1,17 @@
+package com.josval.miniyoutube.exception;
+
+import lombok.Getter;
+
+/**
+ * La cola de transcodificación alcanzó su capacidad máxima (se responde 429 con Retry-After)
+ */
+@Getter
+public class TranscodingQueueFullException extends RuntimeException {
+
+  private final long retryAfterSeconds;
+
+  public TranscodingQueueFullException(long retryAfterSeconds) {
+    super("La cola de procesamiento de videos está llena, intenta más tarde");
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+}
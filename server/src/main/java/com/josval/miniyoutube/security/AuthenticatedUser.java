@@ -0,0 +1,31 @@
+package com.josval.miniyoutube.security;
+
+import java.util.Collection;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * Principal construido solo con los claims del JWT (sin consultar Mongo)
+ * getName() devuelve el email, así authentication.getName() sigue funcionando igual en los controladores
+ */
+@Getter
+@AllArgsConstructor
+public class AuthenticatedUser implements AuthenticatedPrincipal {
+
+  private final String id;
+  private final String email;
+  private final List<String> roles;
+
+  @Override
+  public String getName() {
+    return email;
+  }
+
+  public Collection<? extends GrantedAuthority> getAuthorities() {
+    return roles.stream().map(SimpleGrantedAuthority::new).toList();
+  }
+}
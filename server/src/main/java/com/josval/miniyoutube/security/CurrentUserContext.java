@@ -0,0 +1,29 @@
+package com.josval.miniyoutube.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Usuario autenticado de la petición en curso, resuelto por JwtAuthenticationFilter a partir del token
+ * Fuera de una petición (tareas programadas, @Async) no hay usuario y se devuelve null
+ */
+@Component
+public class CurrentUserContext {
+
+  public AuthenticatedUser get() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+      return user;
+    }
+    return null;
+  }
+
+  /**
+   * ID del usuario de la petición si corresponde al email indicado, sin consultar Mongo
+   */
+  public String idFor(String email) {
+    AuthenticatedUser user = get();
+    return user != null && email != null && email.equals(user.getEmail()) ? user.getId() : null;
+  }
+}
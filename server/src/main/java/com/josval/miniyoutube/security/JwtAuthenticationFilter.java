@@ -1,16 +1,16 @@
 package com.josval.miniyoutube.security;
 
+import com.josval.miniyoutube.user.UserCache;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import org.springframework.context.annotation.Lazy;
+import java.util.List;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -19,11 +19,11 @@ import org.springframework.web.filter.OncePerRequestFilter;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
   private final JwtService jwtService;
-  private final UserDetailsService userDetailsService;
+  private final UserCache userCache;
 
-  public JwtAuthenticationFilter(JwtService jwtService, @Lazy UserDetailsService userDetailsService) {
+  public JwtAuthenticationFilter(JwtService jwtService, UserCache userCache) {
     this.jwtService = jwtService;
-    this.userDetailsService = userDetailsService;
+    this.userCache = userCache;
   }
 
   @Override
@@ -33,25 +33,31 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
       @NonNull FilterChain filterChain
   ) throws ServletException, IOException {
     final String authHeader = request.getHeader("Authorization");
-    final String jwt;
-    final String userEmail;
 
     if (authHeader == null || !authHeader.startsWith("Bearer ")) {
       filterChain.doFilter(request, response);
       return;
     }
 
-    jwt = authHeader.substring(7);
-    userEmail = jwtService.extractUsername(jwt);
+    // Una sola verificación por token (cacheada hasta su exp); un token inválido queda como anónimo
+    final Claims claims = jwtService.verify(authHeader.substring(7));
 
-    if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-      UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+    if (claims != null && claims.getSubject() != null
+        && SecurityContextHolder.getContext().getAuthentication() == null) {
+      // El principal sale de los claims uid/roles, sin consultar Mongo
+      AuthenticatedUser principal = jwtService.toPrincipal(claims);
+      if (principal == null) {
+        // Token emitido antes de incluir uid/roles: se resuelve con la caché de usuarios
+        principal = userCache.findByEmail(claims.getSubject())
+            .map(user -> new AuthenticatedUser(user.getId(), user.getEmail(), List.of()))
+            .orElse(null);
+      }
 
-      if (jwtService.isTokenValid(jwt, userDetails)) {
+      if (principal != null) {
         UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-            userDetails,
+            principal,
             null,
-            userDetails.getAuthorities()
+            principal.getAuthorities()
         );
         authToken.setDetails(
             new WebAuthenticationDetailsSource().buildDetails(request)
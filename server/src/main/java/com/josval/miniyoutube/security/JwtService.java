@@ -2,10 +2,13 @@ package com.josval.miniyoutube.security;
 
 import io.github.cdimascio.dotenv.Dotenv;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import javax.crypto.SecretKey;
@@ -15,12 +18,38 @@ import org.springframework.stereotype.Service;
 @Service
 public class JwtService {
 
-  private final String secretKey;
+  public static final String CLAIM_USER_ID = "uid";
+  public static final String CLAIM_ROLES = "roles";
+
   private final long jwtExpiration;
+  private final SecretKey signInKey;
+  private final JwtParser parser;  // Inmutable y thread-safe: se construye una sola vez
+  private final VerifiedTokenCache verifiedTokenCache;
 
-  public JwtService(Dotenv dotenv) {
-    this.secretKey = dotenv.get("JWT_SECRET", "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970");
+  public JwtService(Dotenv dotenv, VerifiedTokenCache verifiedTokenCache) {
+    String secretKey = dotenv.get("JWT_SECRET", "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970");
     this.jwtExpiration = Long.parseLong(dotenv.get("JWT_EXPIRATION", "86400000")); // 24 horas por defecto
+    this.signInKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+    this.parser = Jwts.parser().verifyWith(signInKey).build();
+    this.verifiedTokenCache = verifiedTokenCache;
+  }
+
+  /**
+   * Verificar firma y expiración una sola vez por token; las siguientes peticiones con el mismo
+   * token salen de la caché hasta su exp. Devuelve null si el token no es válido
+   */
+  public Claims verify(String token) {
+    Claims cached = verifiedTokenCache.get(token);
+    if (cached != null) {
+      return cached;
+    }
+    try {
+      Claims claims = extractAllClaims(token);
+      verifiedTokenCache.put(token, claims);
+      return claims;
+    } catch (JwtException | IllegalArgumentException e) {
+      return null;
+    }
   }
 
   public String extractUsername(String token) {
@@ -50,32 +79,29 @@ public class JwtService {
         .subject(userDetails.getUsername())
         .issuedAt(new Date(System.currentTimeMillis()))
         .expiration(new Date(System.currentTimeMillis() + expiration))
-        .signWith(getSignInKey())
+        .signWith(signInKey)
         .compact();
   }
 
-  public boolean isTokenValid(String token, UserDetails userDetails) {
-    final String username = extractUsername(token);
-    return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+  /**
+   * Principal a partir de los claims; null si el token es anterior a los claims uid/roles
+   */
+  public AuthenticatedUser toPrincipal(Claims claims) {
+    String userId = claims.get(CLAIM_USER_ID, String.class);
+    if (userId == null || claims.getSubject() == null) {
+      return null;
+    }
+    List<?> roles = claims.get(CLAIM_ROLES, List.class);
+    return new AuthenticatedUser(userId, claims.getSubject(),
+        roles != null ? roles.stream().map(String::valueOf).toList() : List.of());
   }
 
-  private boolean isTokenExpired(String token) {
-    return extractExpiration(token).before(new Date());
-  }
-
-  private Date extractExpiration(String token) {
-    return extractClaim(token, Claims::getExpiration);
+  public boolean isTokenValid(String token, UserDetails userDetails) {
+    final Claims claims = verify(token);
+    return claims != null && userDetails.getUsername().equals(claims.getSubject());
   }
 
   private Claims extractAllClaims(String token) {
-    return Jwts.parser()
-        .verifyWith(getSignInKey())
-        .build()
-        .parseSignedClaims(token)
-        .getPayload();
-  }
-
-  private SecretKey getSignInKey() {
-    return Keys.hmacShaKeyFor(secretKey.getBytes());
+    return parser.parseSignedClaims(token).getPayload();
   }
 }
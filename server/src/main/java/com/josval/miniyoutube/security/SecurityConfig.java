@@ -2,6 +2,7 @@ package com.josval.miniyoutube.security;
 
 import java.util.Arrays;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
@@ -20,6 +21,7 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 @Configuration
 @EnableWebSecurity
+@ConditionalOnWebApplication // En modo worker (sin servidor web) no hay cadena de filtros
 @RequiredArgsConstructor
 public class SecurityConfig {
 
@@ -0,0 +1,70 @@
+package com.josval.miniyoutube.security;
+
+import io.jsonwebtoken.Claims;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caché de tokens ya verificados (LRU acotado), con clave SHA-256 del token
+ * Cada entrada vence en el exp del propio token, así un token expirado nunca se acepta desde la caché
+ */
+@Component
+public class VerifiedTokenCache {
+
+  @Value("${security.jwt.cache.max-entries:10000}")
+  private int maxEntries;
+
+  // Orden de acceso: el token menos usado sale primero al superar maxEntries
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > maxEntries;
+    }
+  };
+
+  /**
+   * Claims de un token verificado antes, o null si no está o ya venció
+   */
+  public Claims get(String token) {
+    String key = keyOf(token);
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.expiresAt() <= System.currentTimeMillis()) {
+        entries.remove(key);
+        return null;
+      }
+      return entry.claims();
+    }
+  }
+
+  public void put(String token, Claims claims) {
+    if (claims.getExpiration() == null) {
+      return;  // Sin exp no hay cuándo invalidar la entrada
+    }
+    String key = keyOf(token);
+    synchronized (this) {
+      entries.put(key, new Entry(claims, claims.getExpiration().getTime()));
+    }
+  }
+
+  private String keyOf(String token) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private record Entry(Claims claims, long expiresAt) {
+  }
+}
@@ -0,0 +1,107 @@
+package com.josval.miniyoutube.service;
+
+import com.mongodb.DBRef;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolución en lote de referencias @DBRef(lazy = true)
+ * Toma los IDs de los proxies sin resolverlos y los carga con un único $in por colección
+ */
+@Component
+@RequiredArgsConstructor
+public class DbRefBatchLoader {
+
+  private final MongoTemplate mongoTemplate;
+
+  /**
+   * Abrir un lote con su propio mapa de identidad (uno por solicitud)
+   */
+  public Batch batch() {
+    return new Batch();
+  }
+
+  /**
+   * ID de una referencia sin resolverla (proxy lazy o entidad ya cargada)
+   */
+  public String idOf(Object reference) {
+    if (reference == null) {
+      return null;
+    }
+    if (reference instanceof LazyLoadingProxy proxy) {
+      DBRef ref = proxy.toDBRef();
+      return ref != null ? ref.getId().toString() : null;
+    }
+    MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+        .getRequiredPersistentEntity(reference.getClass());
+    Object id = entity.getIdentifierAccessor(reference).getIdentifier();
+    return id != null ? id.toString() : null;
+  }
+
+  /**
+   * Mapa de identidad de una solicitud: cada documento se busca una sola vez
+   */
+  public class Batch {
+
+    private final Map<Class<?>, Map<String, Object>> loaded = new HashMap<>();
+
+    /**
+     * Cargar las entidades referenciadas que aún no están en el lote (un $in) y retornarlas por ID
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> load(Class<T> type, Collection<?> references) {
+      Map<String, Object> cache = loaded.computeIfAbsent(type, key -> new HashMap<>());
+
+      Set<String> ids = new LinkedHashSet<>();
+      for (Object reference : references) {
+        String id = idOf(reference);
+        if (id != null) {
+          ids.add(id);
+        }
+      }
+
+      Set<Object> missing = new LinkedHashSet<>();
+      for (String id : ids) {
+        if (!cache.containsKey(id)) {
+          missing.add(ObjectId.isValid(id) ? new ObjectId(id) : id);
+        }
+      }
+
+      if (!missing.isEmpty()) {
+        for (T entity : mongoTemplate.find(Query.query(Criteria.where("_id").in(missing)), type)) {
+          cache.put(idOf(entity), entity);
+        }
+      }
+
+      Map<String, T> result = new HashMap<>();
+      for (String id : ids) {
+        Object entity = cache.get(id);
+        if (entity != null) {
+          result.put(id, (T) entity);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Entidad de una referencia ya cargada en el lote (null si no existe)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Class<T> type, Object reference) {
+      Map<String, Object> cache = loaded.get(type);
+      return cache != null ? (T) cache.get(idOf(reference)) : null;
+    }
+  }
+}
@@ -3,12 +3,22 @@ package com.josval.miniyoutube.service;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
 @Service
@@ -48,11 +58,13 @@ public class S3Service {
    */
   public String uploadFile(File file, String folder, String contentType) {
     try {
-      // Para archivos HLS (m3u8 y ts), mantener el nombre original
+      // Para archivos HLS (m3u8 y ts) y del storyboard (jpg y vtt), mantener el nombre original
       // Para otros archivos, generar nombre único
       String fileName;
       if (folder.contains("/hls") && (file.getName().endsWith(".m3u8") || file.getName().endsWith(".ts"))) {
         fileName = file.getName(); // Mantener nombre original para HLS
+      } else if (folder.contains("/storyboard")) {
+        fileName = file.getName(); // El .vtt referencia las hojas por nombre
       } else {
         fileName = generateFileName(file.getName()); // UUID para otros archivos
       }
@@ -107,6 +119,74 @@ public class S3Service {
     }
   }
 
+  /**
+   * Descargar un archivo de S3 (a partir de su URL) a una ruta local que aún no existe
+   */
+  public void downloadFile(String fileUrl, Path target) {
+    String key = extractKeyFromUrl(fileUrl);
+    if (key == null) {
+      throw new RuntimeException("URL de S3 inválida: " + fileUrl);
+    }
+    try {
+      s3Client.getObject(GetObjectRequest.builder()
+          .bucket(s3BucketName)
+          .key(key)
+          .build(), target);
+    } catch (Exception e) {
+      throw new RuntimeException("Error al descargar archivo de S3: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Listar los prefijos inmediatos bajo un prefijo (p.ej. "videos/" -> "videos/{id}/")
+   */
+  public List<String> listPrefixes(String prefix) {
+    List<String> prefixes = new ArrayList<>();
+    ListObjectsV2Request request = ListObjectsV2Request.builder()
+        .bucket(s3BucketName)
+        .prefix(prefix)
+        .delimiter("/")
+        .build();
+
+    for (ListObjectsV2Response page : s3Client.listObjectsV2Paginator(request)) {
+      for (CommonPrefix commonPrefix : page.commonPrefixes()) {
+        prefixes.add(commonPrefix.prefix());
+      }
+    }
+    return prefixes;
+  }
+
+  /**
+   * Eliminar todos los objetos bajo un prefijo (en lotes de hasta 1000 claves)
+   * Retorna la cantidad de objetos eliminados
+   */
+  public int deletePrefix(String prefix) {
+    int deleted = 0;
+    ListObjectsV2Request request = ListObjectsV2Request.builder()
+        .bucket(s3BucketName)
+        .prefix(prefix)
+        .build();
+
+    try {
+      for (ListObjectsV2Response page : s3Client.listObjectsV2Paginator(request)) {
+        List<ObjectIdentifier> keys = page.contents().stream()
+            .map(object -> ObjectIdentifier.builder().key(object.key()).build())
+            .toList();
+        if (keys.isEmpty()) {
+          continue;
+        }
+        s3Client.deleteObjects(DeleteObjectsRequest.builder()
+            .bucket(s3BucketName)
+            .delete(Delete.builder().objects(keys).build())
+            .build());
+        deleted += keys.size();
+      }
+    } catch (Exception e) {
+      throw new RuntimeException("Error al eliminar prefijo de S3: " + e.getMessage(), e);
+    }
+    return deleted;
+  }
+
   private String extractKeyFromUrl(String fileUrl) {
     if (fileUrl == null || fileUrl.isEmpty()) {
       return null;
@@ -0,0 +1,106 @@
+package com.josval.miniyoutube.subscription;
+
+import com.josval.miniyoutube.user.UserEntity;
+import com.mongodb.DBRef;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Reconciliación de UserEntity.subscriberCount con las suscripciones reales
+ * Corrige la deriva por cambios desde el panel de administración, un save() del perfil que pisó
+ * un $inc concurrente o fallos entre la escritura de la suscripción y el contador
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriberCountMaintenanceService {
+
+  private static final String SUBSCRIPTIONS = "subscripciones";
+  private static final String USERS = "users";
+
+  private final MongoTemplate mongoTemplate;
+
+  @Async
+  @EventListener(ApplicationReadyEvent.class)
+  public void reconcileOnStartup() {
+    reconcile();
+  }
+
+  @Scheduled(
+      fixedDelayString = "${subscription.count.repair-ms:86400000}",
+      initialDelayString = "${subscription.count.repair-ms:86400000}")
+  public void reconcilePeriodically() {
+    reconcile();
+  }
+
+  /**
+   * Contar suscripciones por canal con una agregación y corregir solo los usuarios que difieren
+   * Cada corrección exige el valor leído: si un $inc concurrente ya lo cambió, el usuario se salta
+   * (el conteo agregado quedó viejo) y se revisa en la próxima pasada
+   */
+  public synchronized void reconcile() {
+    try {
+      Map<String, Long> actual = new HashMap<>();
+      Aggregation aggregation = Aggregation.newAggregation(
+          Aggregation.group("channel").count().as("count"));
+      for (Document group : mongoTemplate.aggregate(aggregation, SUBSCRIPTIONS, Document.class)) {
+        String channelId = refId(group.get("_id"));
+        if (channelId != null) {
+          actual.put(channelId, ((Number) group.get("count")).longValue());
+        }
+      }
+
+      BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserEntity.class);
+      int fixes = 0;
+
+      Query all = new Query();
+      all.fields().include("_id", "subscriberCount");
+      try (Stream<Document> users = mongoTemplate.stream(all, Document.class, USERS)) {
+        for (Document user : (Iterable<Document>) users::iterator) {
+          String id = user.get("_id").toString();
+          Number current = (Number) user.get("subscriberCount");
+          long expected = actual.getOrDefault(id, 0L);
+          if (current == null || current.longValue() != expected) {
+            // is(null) también coincide con el campo ausente
+            ops.updateOne(Query.query(Criteria.where("_id").is(id).and("subscriberCount").is(current)),
+                new Update().set("subscriberCount", expected));
+            fixes++;
+          }
+        }
+      }
+
+      if (fixes > 0) {
+        ops.execute();
+        log.info("Contadores de suscriptores corregidos: {}", fixes);
+      }
+    } catch (Exception e) {
+      log.error("Error reconciliando contadores de suscriptores: {}", e.getMessage(), e);
+    }
+  }
+
+  private String refId(Object ref) {
+    if (ref instanceof DBRef dbRef) {
+      return dbRef.getId().toString();
+    }
+    if (ref instanceof Document document && document.get("$id") != null) {
+      return document.get("$id").toString();
+    }
+    return null;
+  }
+}
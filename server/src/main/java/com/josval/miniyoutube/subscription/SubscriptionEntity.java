@@ -1,11 +1,13 @@
 package com.josval.miniyoutube.subscription;
 
+import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.MongoId;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.josval.miniyoutube.user.UserEntity;
 
 import lombok.AllArgsConstructor;
@@ -28,9 +30,31 @@ public class SubscriptionEntity {
   @MongoId
   private String id;
 
-  @DBRef
+  @JsonIgnore
+  @DBRef(lazy = true)
   private UserEntity subscriber;
 
-  @DBRef
+  @JsonIgnore
+  @DBRef(lazy = true)
   private UserEntity channel;
+
+  /**
+   * ID del suscriptor sin resolver la referencia lazy
+   */
+  public String getSubscriberId() {
+    if (subscriber instanceof LazyLoadingProxy proxy) {
+      return proxy.toDBRef().getId().toString();
+    }
+    return subscriber != null ? subscriber.getId() : null;
+  }
+
+  /**
+   * ID del canal sin resolver la referencia lazy
+   */
+  public String getChannelId() {
+    if (channel instanceof LazyLoadingProxy proxy) {
+      return proxy.toDBRef().getId().toString();
+    }
+    return channel != null ? channel.getId() : null;
+  }
 }
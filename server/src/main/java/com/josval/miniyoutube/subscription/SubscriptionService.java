@@ -1,17 +1,29 @@
 package com.josval.miniyoutube.subscription;
 
+import com.josval.miniyoutube.security.CurrentUserContext;
+import com.josval.miniyoutube.service.DbRefBatchLoader;
 import com.josval.miniyoutube.subscription.dto.SubscriptionResponse;
 import com.josval.miniyoutube.subscription.dto.SubscriptionStatusResponse;
+import com.josval.miniyoutube.user.UserCache;
 import com.josval.miniyoutube.user.UserEntity;
 import com.josval.miniyoutube.user.UserRepository;
+import com.josval.miniyoutube.video.FeedFanoutService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -19,58 +31,71 @@ public class SubscriptionService {
 
   private final SubscriptionRepository subscriptionRepository;
   private final UserRepository userRepository;
+  private final UserCache userCache;
+  private final CurrentUserContext currentUserContext;
+  private final FeedFanoutService feedFanoutService;
+  private final DbRefBatchLoader dbRefBatchLoader;
+  private final MongoTemplate mongoTemplate;
 
   /**
    * Suscribirse a un canal
+   * Upsert idempotente sobre el índice único (subscriber, channel): solo una inserción real incrementa
+   * el contador, y el estado se arma con el resultado de las escrituras, sin leer antes
    */
   public SubscriptionStatusResponse subscribe(String channelId, String userEmail) {
-    UserEntity subscriber = userRepository.findByEmail(userEmail)
-        .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-
-    UserEntity channel = userRepository.findById(channelId)
-        .orElseThrow(() -> new RuntimeException("Canal no encontrado"));
+    UserEntity subscriber = userRefByEmail(userEmail);
+    UserEntity channel = userRef(channelId);
 
     // No permitir suscribirse a sí mismo
-    if (subscriber.getId().equals(channel.getId())) {
+    if (subscriber.getId().equals(channelId)) {
       throw new RuntimeException("No puedes suscribirte a tu propio canal");
     }
 
-    // Verificar si ya está suscrito
-    if (subscriptionRepository.existsBySubscriberAndChannel(subscriber, channel)) {
-      throw new RuntimeException("Ya estás suscrito a este canal");
+    boolean created;
+    try {
+      created = mongoTemplate.upsert(
+          subscriptionQuery(subscriber, channel),
+          new Update().setOnInsert("subscriber", subscriber).setOnInsert("channel", channel),
+          SubscriptionEntity.class).getUpsertedId() != null;
+    } catch (DuplicateKeyException e) {
+      // Otro request insertó la misma suscripción a la vez
+      created = false;
     }
 
-    // Crear suscripción
-    SubscriptionEntity subscription = new SubscriptionEntity();
-    subscription.setSubscriber(subscriber);
-    subscription.setChannel(channel);
-    subscriptionRepository.save(subscription);
+    if (!created) {
+      return new SubscriptionStatusResponse(true, currentSubscriberCount(channel));
+    }
 
-    log.info("Usuario {} se suscribió al canal {}", subscriber.getUsername(), channel.getUsername());
+    UserEntity updated = adjustSubscriberCount(channelId, 1);
+    if (updated == null) {
+      // El canal no existe: deshacer la suscripción recién insertada
+      mongoTemplate.remove(subscriptionQuery(subscriber, channel), SubscriptionEntity.class);
+      throw new RuntimeException("Canal no encontrado");
+    }
 
-    return getSubscriptionStatus(channelId, userEmail);
+    log.info("Usuario {} se suscribió al canal {}", subscriber.getId(), channelId);
+    feedFanoutService.onSubscribed(subscriber.getId(), channelId);
+    return new SubscriptionStatusResponse(true, subscriberCountOf(updated));
   }
 
   /**
-   * Desuscribirse de un canal
+   * Desuscribirse de un canal (idempotente: sin suscripción solo devuelve el estado)
    */
   public SubscriptionStatusResponse unsubscribe(String channelId, String userEmail) {
-    UserEntity subscriber = userRepository.findByEmail(userEmail)
-        .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-
-    UserEntity channel = userRepository.findById(channelId)
-        .orElseThrow(() -> new RuntimeException("Canal no encontrado"));
-
-    // Buscar la suscripción
-    SubscriptionEntity subscription = subscriptionRepository.findBySubscriberAndChannel(subscriber, channel)
-        .orElseThrow(() -> new RuntimeException("No estás suscrito a este canal"));
-
-    // Eliminar suscripción
-    subscriptionRepository.delete(subscription);
-
-    log.info("Usuario {} se desuscribió del canal {}", subscriber.getUsername(), channel.getUsername());
+    UserEntity subscriber = userRefByEmail(userEmail);
+    UserEntity channel = userRef(channelId);
+
+    long removed = mongoTemplate.remove(subscriptionQuery(subscriber, channel), SubscriptionEntity.class)
+        .getDeletedCount();
+    if (removed > 0) {
+      log.info("Usuario {} se desuscribió del canal {}", subscriber.getId(), channelId);
+      UserEntity updated = adjustSubscriberCount(channelId, -1);
+      if (updated != null) {
+        return new SubscriptionStatusResponse(false, subscriberCountOf(updated));
+      }
+    }
 
-    return getSubscriptionStatus(channelId, userEmail);
+    return new SubscriptionStatusResponse(false, currentSubscriberCount(channel));
   }
 
   /**
@@ -83,29 +108,30 @@ public class SubscriptionService {
     boolean isSubscribed = false;
 
     if (userEmail != null) {
-      UserEntity subscriber = userRepository.findByEmail(userEmail).orElse(null);
+      UserEntity subscriber = userCache.findByEmail(userEmail).orElse(null);
       if (subscriber != null) {
         isSubscribed = subscriptionRepository.existsBySubscriberAndChannel(subscriber, channel);
       }
     }
 
-    long subscriberCount = subscriptionRepository.countByChannel(channel);
-
-    return new SubscriptionStatusResponse(isSubscribed, subscriberCount);
+    return new SubscriptionStatusResponse(isSubscribed, subscriberCountOf(channel));
   }
 
   /**
    * Listar canales a los que está suscrito un usuario (mis suscripciones)
    */
   public Page<SubscriptionResponse> getUserSubscriptions(String userEmail, int page, int size) {
-    UserEntity user = userRepository.findByEmail(userEmail)
+    UserEntity user = userCache.findByEmail(userEmail)
         .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
     Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "id"));
 
     Page<SubscriptionEntity> subscriptions = subscriptionRepository.findBySubscriber(user, pageable);
 
-    return subscriptions.map(subscription -> mapToResponse(subscription.getChannel()));
+    // Resolver todos los canales de la página con una sola consulta
+    Map<String, UserEntity> channels = dbRefBatchLoader.batch().load(UserEntity.class,
+        subscriptions.getContent().stream().map(SubscriptionEntity::getChannel).toList());
+    return subscriptions.map(subscription -> mapToResponse(channels.get(subscription.getChannelId())));
   }
 
   /**
@@ -119,7 +145,9 @@ public class SubscriptionService {
 
     Page<SubscriptionEntity> subscriptions = subscriptionRepository.findByChannel(channel, pageable);
 
-    return subscriptions.map(subscription -> mapToResponse(subscription.getSubscriber()));
+    Map<String, UserEntity> subscribers = dbRefBatchLoader.batch().load(UserEntity.class,
+        subscriptions.getContent().stream().map(SubscriptionEntity::getSubscriber).toList());
+    return subscriptions.map(subscription -> mapToResponse(subscribers.get(subscription.getSubscriberId())));
   }
 
   /**
@@ -131,7 +159,66 @@ public class SubscriptionService {
     response.setUsername(user.getUsername());
     response.setChannelName(user.getChannelName());
     response.setAvatarUrl(user.getAvatarURL());
-    response.setSubscriberCount(subscriptionRepository.countByChannel(user));
+    response.setSubscriberCount(subscriberCountOf(user));
     return response;
   }
+
+  /**
+   * Contador materializado del canal; solo se cuenta si el canal aún no fue reconciliado
+   */
+  private long subscriberCountOf(UserEntity channel) {
+    if (channel.getSubscriberCount() != null) {
+      return channel.getSubscriberCount();
+    }
+    return subscriptionRepository.countByChannel(channel);
+  }
+
+  /**
+   * $inc sobre el contador del canal, devolviendo el canal actualizado (solo id y contador)
+   * El decremento solo se aplica si es positivo; null si el canal no existe o ya estaba en cero
+   */
+  private UserEntity adjustSubscriberCount(String channelId, int delta) {
+    Criteria criteria = Criteria.where("_id").is(channelId);
+    if (delta < 0) {
+      criteria.and("subscriberCount").gt(0);
+    }
+    Query query = Query.query(criteria);
+    query.fields().include("_id", "subscriberCount");
+    return mongoTemplate.findAndModify(query, new Update().inc("subscriberCount", delta),
+        FindAndModifyOptions.options().returnNew(true), UserEntity.class);
+  }
+
+  private long currentSubscriberCount(UserEntity channel) {
+    Query query = Query.query(Criteria.where("_id").is(channel.getId()));
+    query.fields().include("_id", "subscriberCount");
+    UserEntity current = mongoTemplate.findOne(query, UserEntity.class);
+    if (current == null) {
+      throw new RuntimeException("Canal no encontrado");
+    }
+    return subscriberCountOf(current);
+  }
+
+  private Query subscriptionQuery(UserEntity subscriber, UserEntity channel) {
+    return Query.query(Criteria.where("subscriber").is(subscriber).and("channel").is(channel));
+  }
+
+  /**
+   * Usuario autenticado con solo el id, suficiente para construir las referencias
+   * El id sale del token de la petición; si no coincide con el email se resuelve con la caché de usuarios
+   */
+  private UserEntity userRefByEmail(String email) {
+    String id = currentUserContext.idFor(email);
+    if (id == null) {
+      id = userCache.findByEmail(email)
+          .orElseThrow(() -> new RuntimeException("Usuario no encontrado"))
+          .getId();
+    }
+    return userRef(id);
+  }
+
+  private UserEntity userRef(String id) {
+    UserEntity user = new UserEntity();
+    user.setId(id);
+    return user;
+  }
 }
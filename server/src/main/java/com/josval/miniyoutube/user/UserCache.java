@@ -0,0 +1,103 @@
+package com.josval.miniyoutube.user;
+
+import com.josval.miniyoutube.security.CurrentUserContext;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caché corta de usuarios (LRU acotado + TTL) para los servicios que necesitan la entidad completa
+ * Para el usuario de la petición se busca por el id del token, que sigue valiendo aunque cambie el email.
+ * Se invalida al editar o eliminar el usuario en este nodo; en otros nodos los cambios se ven al vencer el TTL
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCache {
+
+  private final UserRepository userRepository;
+  private final CurrentUserContext currentUserContext;
+
+  @Value("${user.cache.max-entries:10000}")
+  private int maxEntries;
+
+  @Value("${user.cache.ttl-ms:30000}")
+  private long ttlMs;
+
+  private final Map<String, String> idByEmail = new HashMap<>();
+
+  // Orden de acceso: el usuario menos usado sale primero al superar maxEntries
+  private final Map<String, Entry> byId = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      if (size() > maxEntries) {
+        idByEmail.remove(eldest.getValue().user().getEmail());
+        return true;
+      }
+      return false;
+    }
+  };
+
+  public Optional<UserEntity> findByEmail(String email) {
+    if (email == null) {
+      return Optional.empty();
+    }
+    String tokenUserId = currentUserContext.idFor(email);
+    if (tokenUserId != null) {
+      return findById(tokenUserId);
+    }
+
+    UserEntity cached;
+    synchronized (this) {
+      String id = idByEmail.get(email);
+      cached = id != null ? fresh(id) : null;
+    }
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+    return userRepository.findByEmail(email).map(this::put);
+  }
+
+  public Optional<UserEntity> findById(String id) {
+    UserEntity cached;
+    synchronized (this) {
+      cached = fresh(id);
+    }
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+    return userRepository.findById(id).map(this::put);
+  }
+
+  public synchronized void invalidate(String id) {
+    Entry removed = id != null ? byId.remove(id) : null;
+    if (removed != null) {
+      idByEmail.remove(removed.user().getEmail());
+    }
+  }
+
+  private UserEntity fresh(String id) {
+    Entry entry = byId.get(id);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expiresAt() < System.currentTimeMillis()) {
+      invalidate(id);
+      return null;
+    }
+    return entry.user();
+  }
+
+  private synchronized UserEntity put(UserEntity user) {
+    invalidate(user.getId());
+    byId.put(user.getId(), new Entry(user, System.currentTimeMillis() + ttlMs));
+    idByEmail.put(user.getEmail(), user.getId());
+    return user;
+  }
+
+  private record Entry(UserEntity user, long expiresAt) {
+  }
+}
@@ -28,6 +28,8 @@ public class UserEntity {
   private String password;
   private String channelName;
   private String avatarURL;
+  private Boolean feedPullOnRead;  // Canal con demasiados suscriptores para fan-out: sus videos se leen al construir el feed
+  private Long subscriberCount;  // Suscriptores materializados: $inc al suscribirse/desuscribirse, reconciliado en segundo plano
 
   @CreatedDate
   private Date createdAt;
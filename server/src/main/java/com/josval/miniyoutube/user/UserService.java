@@ -7,12 +7,21 @@ import com.josval.miniyoutube.user.dto.LoginResponse;
 import com.josval.miniyoutube.user.dto.RegisterRequest;
 import com.josval.miniyoutube.user.dto.UpdateUserRequest;
 import com.josval.miniyoutube.user.dto.UserResponse;
+import com.josval.miniyoutube.video.CreatorSummaryService;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -31,6 +40,9 @@ public class UserService implements UserDetailsService {
   private final JwtService jwtService;
   private final AuthenticationManager authenticationManager;
   private final S3Service s3Service;
+  private final CreatorSummaryService creatorSummaryService;
+  private final UserCache userCache;
+  private final MongoTemplate mongoTemplate;
 
   @Override
   public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
@@ -77,9 +89,12 @@ public class UserService implements UserDetailsService {
     UserEntity user = userRepository.findByEmail(request.getEmail())
         .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado"));
 
-    // Generar token
-    UserDetails userDetails = loadUserByUsername(request.getEmail());
-    String token = jwtService.generateToken(userDetails);
+    // Generar token con el id y los roles, para autenticar las peticiones sin consultar Mongo
+    UserDetails userDetails = new User(user.getEmail(), user.getPassword(), Collections.emptyList());
+    Map<String, Object> claims = new HashMap<>();
+    claims.put(JwtService.CLAIM_USER_ID, user.getId());
+    claims.put(JwtService.CLAIM_ROLES, userDetails.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+    String token = jwtService.generateToken(claims, userDetails);
 
     // Crear respuesta
     LoginResponse response = new LoginResponse();
@@ -103,23 +118,33 @@ public class UserService implements UserDetailsService {
     UserEntity user = userRepository.findById(userId)
         .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
+    Update update = new Update();
     if (userResponse.getUsername() != null) {
       user.setUsername(userResponse.getUsername());
+      update.set("username", user.getUsername());
     }
     if (userResponse.getChannelName() != null) {
       user.setChannelName(userResponse.getChannelName());
+      update.set("channelName", user.getChannelName());
     }
     if (userResponse.getAvatarURL() != null) {
       user.setAvatarURL(userResponse.getAvatarURL());
+      update.set("avatarURL", user.getAvatarURL());
     }
 
-    UserEntity updatedUser = userRepository.save(user);
+    UserEntity updatedUser = saveProfile(user, update);
+    if (userResponse.getChannelName() != null || userResponse.getAvatarURL() != null) {
+      creatorSummaryService.propagate(updatedUser);
+    }
     return mapToUserResponse(updatedUser);
   }
 
   public UserResponse updateCurrentUser(String email, UpdateUserRequest request, MultipartFile avatar) {
     UserEntity user = userRepository.findByEmail(email)
         .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+    String previousChannelName = user.getChannelName();
+    String previousAvatarURL = user.getAvatarURL();
+    Update update = new Update();
 
     // Validar username único si se está actualizando
     if (request.getUsername() != null && !request.getUsername().equals(user.getUsername())) {
@@ -127,6 +152,7 @@ public class UserService implements UserDetailsService {
         throw new ResponseStatusException(HttpStatus.CONFLICT, "El username ya esta en uso");
       }
       user.setUsername(request.getUsername());
+      update.set("username", user.getUsername());
     }
 
     // Validar email único si se está actualizando
@@ -135,11 +161,13 @@ public class UserService implements UserDetailsService {
         throw new ResponseStatusException(HttpStatus.CONFLICT, "El email ya esta registrado");
       }
       user.setEmail(request.getEmail());
+      update.set("email", user.getEmail());
     }
 
     // Actualizar channelName
     if (request.getChannelName() != null) {
       user.setChannelName(request.getChannelName());
+      update.set("channelName", user.getChannelName());
     }
 
     // Subir avatar a S3 si se proporciona
@@ -156,12 +184,31 @@ public class UserService implements UserDetailsService {
       // Subir nuevo avatar
       String avatarUrl = s3Service.uploadFile(avatar, "avatar");
       user.setAvatarURL(avatarUrl);
+      update.set("avatarURL", avatarUrl);
     }
 
-    UserEntity updatedUser = userRepository.save(user);
+    UserEntity updatedUser = saveProfile(user, update);
+
+    // Actualizar el snapshot del creador embebido en sus videos
+    if (!Objects.equals(previousChannelName, updatedUser.getChannelName())
+        || !Objects.equals(previousAvatarURL, updatedUser.getAvatarURL())) {
+      creatorSummaryService.propagate(updatedUser);
+    }
     return mapToUserResponse(updatedUser);
   }
 
+  /**
+   * Escribir solo los campos del perfil que cambiaron
+   * Un save() del documento completo pisaría subscriberCount ($inc concurrentes de las suscripciones)
+   */
+  private UserEntity saveProfile(UserEntity user, Update update) {
+    if (!update.getUpdateObject().isEmpty()) {
+      mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(user.getId())), update, UserEntity.class);
+    }
+    userCache.invalidate(user.getId());
+    return user;
+  }
+
   private UserResponse mapToUserResponse(UserEntity user) {
     UserResponse response = new UserResponse();
     response.setId(user.getId());
@@ -0,0 +1,166 @@
+package com.josval.miniyoutube.video;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Selección de bitrates por video (per-title encoding)
+ * Codifica fragmentos de muestra con CRF fijo para medir la complejidad del contenido
+ * y ajusta la escalera de calidades, nunca por encima de la escalera fija
+ */
+@Service
+@Slf4j
+public class BitrateLadderService {
+
+  private static final Map<String, Integer> DEFAULT_LADDER = Map.of(
+      "360p", 800,
+      "480p", 1400,
+      "720p", 2800,
+      "1080p", 5000
+  );
+
+  private static final int PROBE_HEIGHT = 480;
+  private static final int MIN_BITRATE = 250;
+  private static final double HEADROOM = 1.15; // Margen sobre el bitrate medido con CRF
+  private static final double MIN_RUNG_STEP = 1.3; // Una calidad intermedia debe aportar al menos +30% de bitrate
+
+  @Value("${video.ladder.per-title.enabled:true}")
+  private boolean perTitleEnabled;
+
+  @Value("${video.ladder.probe.samples:3}")
+  private int probeSamples;
+
+  @Value("${video.ladder.probe.seconds:4}")
+  private int probeSeconds;
+
+  @Value("${video.ladder.probe.crf:23}")
+  private int probeCrf;
+
+  /**
+   * Bitrate de la escalera fija (kbps) para una calidad
+   */
+  public int getDefaultBitrate(String quality) {
+    return DEFAULT_LADDER.getOrDefault(quality, 800);
+  }
+
+  /**
+   * Construir la escalera de calidades (calidad -> kbps) para un video
+   * Si el análisis está desactivado o falla, se usa la escalera fija
+   */
+  public Map<String, Integer> buildLadder(File videoFile, List<String> qualities, int duration, Path tempDir) {
+    Map<String, Integer> defaultLadder = new LinkedHashMap<>();
+    for (String quality : qualities) {
+      defaultLadder.put(quality, getDefaultBitrate(quality));
+    }
+
+    if (!perTitleEnabled || duration <= 0) {
+      return defaultLadder;
+    }
+
+    Integer probeKbps = probeComplexity(videoFile, duration, tempDir);
+    if (probeKbps == null) {
+      return defaultLadder;
+    }
+
+    Map<String, Integer> ladder = new LinkedHashMap<>();
+    int previousBitrate = 0;
+
+    for (int i = 0; i < qualities.size(); i++) {
+      String quality = qualities.get(i);
+      int height = Integer.parseInt(quality.replace("p", ""));
+
+      // Escalar el bitrate medido a la resolución de la calidad (los bits no crecen linealmente con los píxeles)
+      double pixelRatio = Math.pow((double) height / PROBE_HEIGHT, 2);
+      int estimated = (int) Math.round(probeKbps * Math.pow(pixelRatio, 0.75) * HEADROOM);
+      int bitrate = Math.max(MIN_BITRATE, Math.min(estimated, getDefaultBitrate(quality)));
+
+      // Omitir calidades intermedias que casi no aportan sobre la anterior (siempre se conservan la menor y la mayor)
+      boolean lowest = ladder.isEmpty();
+      boolean highest = i == qualities.size() - 1;
+      if (!lowest && !highest && bitrate < previousBitrate * MIN_RUNG_STEP) {
+        log.info("Omitiendo calidad {} ({} kbps apenas supera {} kbps)", quality, bitrate, previousBitrate);
+        continue;
+      }
+
+      ladder.put(quality, bitrate);
+      previousBitrate = bitrate;
+    }
+
+    log.info("Escalera per-title (probe {} kbps a {}p): {}", probeKbps, PROBE_HEIGHT, ladder);
+    return ladder;
+  }
+
+  /**
+   * Codificar fragmentos de muestra con CRF a 480p y medir el bitrate resultante
+   * Retorna kbps estimados o null si no se pudo medir
+   */
+  private Integer probeComplexity(File videoFile, int duration, Path tempDir) {
+    int samples = Math.max(1, probeSamples);
+    int sampleLength = Math.min(probeSeconds, duration);
+    List<Double> measured = new ArrayList<>();
+
+    for (int i = 0; i < samples; i++) {
+      // Repartir las muestras a lo largo del video
+      int start = (int) ((long) duration * (i + 1) / (samples + 1)) - sampleLength / 2;
+      start = Math.max(0, Math.min(start, duration - sampleLength));
+      File probeFile = tempDir.resolve("probe_" + i + ".mp4").toFile();
+
+      try {
+        ProcessBuilder processBuilder = new ProcessBuilder(
+            "ffmpeg",
+            "-y",
+            "-ss", String.valueOf(start),
+            "-t", String.valueOf(sampleLength),
+            "-i", videoFile.getAbsolutePath(),
+            "-an",
+            "-vf", "scale=-2:" + PROBE_HEIGHT,
+            "-c:v", "libx264",
+            "-preset", "veryfast",
+            "-crf", String.valueOf(probeCrf),
+            probeFile.getAbsolutePath()
+        );
+
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        while (reader.readLine() != null) {
+          // Consumir output para evitar bloqueos
+        }
+
+        if (process.waitFor() == 0 && probeFile.exists() && sampleLength > 0) {
+          measured.add(probeFile.length() * 8.0 / 1000.0 / sampleLength);
+        }
+      } catch (Exception e) {
+        log.warn("Error en muestra de complejidad {}: {}", i, e.getMessage());
+      } finally {
+        try {
+          Files.deleteIfExists(probeFile.toPath());
+        } catch (Exception ex) {
+          log.warn("No se pudo eliminar archivo de muestra: {}", probeFile.getPath());
+        }
+      }
+    }
+
+    if (measured.isEmpty()) {
+      log.warn("No se pudo medir la complejidad del video, usando escalera fija");
+      return null;
+    }
+
+    // Promedio sesgado hacia la muestra más compleja para no degradar escenas difíciles
+    double mean = measured.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+    double max = measured.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+    return (int) Math.round((mean + max) / 2);
+  }
+}
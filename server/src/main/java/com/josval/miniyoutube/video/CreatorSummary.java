@@ -0,0 +1,25 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.user.UserEntity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Copia embebida de los datos del creador que se muestran junto al video
+ * Evita resolver el DBRef del creador al listar videos
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreatorSummary {
+  private String id;
+  private String channelName;
+  private String avatarURL;
+
+  public static CreatorSummary from(UserEntity user) {
+    return new CreatorSummary(user.getId(), user.getChannelName(), user.getAvatarURL());
+  }
+}
@@ -0,0 +1,98 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.user.UserEntity;
+import com.mongodb.DBRef;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Mantiene el snapshot creatorSummary de los videos
+ * Propaga cambios de perfil del creador y completa los videos antiguos al arrancar
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CreatorSummaryService {
+
+  private static final int BATCH_SIZE = 500;
+
+  private final MongoTemplate mongoTemplate;
+
+  /**
+   * Actualizar el snapshot en todos los videos del usuario (en background)
+   */
+  @Async
+  public void propagate(UserEntity user) {
+    try {
+      long updated = mongoTemplate.updateMulti(
+          Query.query(Criteria.where("creator").is(user)),
+          new Update().set("creatorSummary", CreatorSummary.from(user)),
+          VideoEntity.class).getModifiedCount();
+      log.info("Snapshot de creador {} actualizado en {} videos", user.getId(), updated);
+    } catch (Exception e) {
+      log.error("Error propagando snapshot de creador {}: {}", user.getId(), e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Migración: completar creatorSummary en videos creados antes de existir el snapshot
+   * Un lote de videos y una sola consulta $in de usuarios por iteración
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfillMissingSummaries() {
+    long migrated = 0;
+    try {
+      while (true) {
+        Query query = Query.query(Criteria.where("creatorSummary").exists(false).and("creator").exists(true))
+            .limit(BATCH_SIZE);
+        query.fields().include("creator");
+        List<Document> videos = mongoTemplate.find(query, Document.class, "videos");
+        if (videos.isEmpty()) {
+          break;
+        }
+
+        List<Object> creatorIds = videos.stream()
+            .map(video -> video.get("creator") instanceof DBRef ref ? ref.getId() : null)
+            .filter(Objects::nonNull)
+            .distinct()
+            .toList();
+        Map<String, UserEntity> creators = mongoTemplate.find(
+                Query.query(Criteria.where("_id").in(creatorIds)), UserEntity.class).stream()
+            .collect(Collectors.toMap(UserEntity::getId, Function.identity()));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, VideoEntity.class);
+        for (Document video : videos) {
+          String creatorId = video.get("creator") instanceof DBRef ref ? ref.getId().toString() : null;
+          UserEntity creator = creatorId != null ? creators.get(creatorId) : null;
+          // Creador inexistente: se guarda solo el ID para no volver a procesar el video
+          CreatorSummary summary = creator != null ? CreatorSummary.from(creator) : new CreatorSummary(creatorId, null, null);
+          bulk.updateOne(Query.query(Criteria.where("_id").is(video.get("_id"))),
+              new Update().set("creatorSummary", summary));
+        }
+        bulk.execute();
+        migrated += videos.size();
+      }
+      if (migrated > 0) {
+        log.info("Migración de snapshot de creador completada: {} videos", migrated);
+      }
+    } catch (Exception e) {
+      log.error("Error en migración de snapshot de creador: {}", e.getMessage(), e);
+    }
+  }
+}
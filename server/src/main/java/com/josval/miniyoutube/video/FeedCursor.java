@@ -0,0 +1,100 @@
+package com.josval.miniyoutube.video;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Token de continuación (createdAt, id) para paginación por keyset
+ * Se serializa como base64url de "createdAtMillis:id"; el feed de inicio antepone la fase ("S|..." o "T|...")
+ * y una fase sin posición ("T|") indica el inicio de esa fase
+ */
+@Getter
+@AllArgsConstructor
+public class FeedCursor {
+
+  public static final char PHASE_SUBSCRIPTIONS = 'S';
+  public static final char PHASE_TAIL = 'T';
+
+  private final Character phase;
+  private final Date createdAt;
+  private final String id;
+
+  public FeedCursor(Date createdAt, String id) {
+    this(null, createdAt, id);
+  }
+
+  public static FeedCursor of(VideoEntity video) {
+    return new FeedCursor(video.getCreatedAt(), video.getId());
+  }
+
+  public static FeedCursor of(char phase, VideoEntity video) {
+    return new FeedCursor(phase, video.getCreatedAt(), video.getId());
+  }
+
+  /**
+   * Inicio de una fase (sin posición)
+   */
+  public static FeedCursor start(char phase) {
+    return new FeedCursor(phase, null, null);
+  }
+
+  public boolean hasPosition() {
+    return createdAt != null && id != null;
+  }
+
+  /**
+   * Valor del _id para comparar en consultas (los IDs generados por Mongo son ObjectId)
+   */
+  public Object idValue() {
+    return ObjectId.isValid(id) ? new ObjectId(id) : id;
+  }
+
+  /**
+   * Condición "posterior al cursor" en orden (createdAt desc, _id desc)
+   */
+  public Criteria afterCriteria() {
+    return new Criteria().orOperator(
+        Criteria.where("createdAt").lt(createdAt),
+        Criteria.where("createdAt").is(createdAt).and("_id").lt(idValue())
+    );
+  }
+
+  public String encode() {
+    String position = hasPosition() ? createdAt.getTime() + ":" + id : "";
+    String raw = phase != null ? phase + "|" + position : position;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodificar un token; null o vacío significa primera página
+   */
+  public static FeedCursor decode(String token) {
+    if (token == null || token.isBlank()) {
+      return null;
+    }
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      Character phase = null;
+      int bar = raw.indexOf('|');
+      if (bar == 1) {
+        phase = raw.charAt(0);
+        raw = raw.substring(2);
+      }
+      if (raw.isEmpty()) {
+        return new FeedCursor(phase, null, null);
+      }
+      int separator = raw.indexOf(':');
+      return new FeedCursor(phase, new Date(Long.parseLong(raw.substring(0, separator))), raw.substring(separator + 1));
+    } catch (RuntimeException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor inválido");
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.user.UserEntity;
+import com.josval.miniyoutube.video.enums.VideoPrivacyStatus;
+import com.josval.miniyoutube.video.enums.VideoProcessingStatus;
+import com.mongodb.DBRef;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fan-out on write: al publicarse un video se agrega a los feeds precalculados de los suscriptores
+ * Los canales con más de video.feed.fanout.max-subscribers suscriptores no se distribuyen
+ * (se marcan para leerse al construir el feed), así un canal muy grande no genera millones de escrituras
+ * Un fan-out que falla también pasa el canal a modo pull, y al salir de ese modo se completan los
+ * feeds de sus suscriptores antes de quitar la marca: mientras la marca está puesta el feed lee el canal
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FeedFanoutService {
+
+  private static final int BATCH_SIZE = 500;
+
+  private final MongoTemplate mongoTemplate;
+
+  @Value("${video.feed.fanout.enabled:false}")
+  private boolean enabled;
+
+  @Value("${video.feed.fanout.max-subscribers:10000}")
+  private long maxSubscribers;
+
+  @Value("${video.feed.fanout.capacity:500}")
+  private int capacity;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Distribuir un video recién publicado (primera vez que llega a COMPLETED)
+   */
+  @Async
+  public void onVideoPublished(VideoEntity video) {
+    if (!enabled || video.getCreatorId() == null) {
+      return;
+    }
+    if (video.getPrivacyStatus() != VideoPrivacyStatus.PUBLIC && video.getPrivacyStatus() != VideoPrivacyStatus.UNLISTED) {
+      return;
+    }
+
+    try {
+      String channelId = video.getCreatorId();
+      // El $id de las referencias se guarda como String; la consulta sobre Document no se re-mapea
+      DBRef channelRef = new DBRef("users", channelId);
+      long subscribers = mongoTemplate.count(Query.query(Criteria.where("channel").is(channelRef)), "subscripciones");
+
+      // Modo híbrido: el canal pasa a leerse en el feed (pull) si supera el umbral
+      if (subscribers > maxSubscribers) {
+        setPullOnRead(channelId, true);
+        log.info("Canal {} con {} suscriptores: video {} se leerá al construir el feed", channelId, subscribers, video.getId());
+        return;
+      }
+
+      // Saliendo del modo pull: los videos publicados mientras tanto (incluido este) no están en los feeds
+      if (isPullOnRead(channelId)) {
+        int refilled = 0;
+        for (String subscriberId : findSubscriberIds(channelRef)) {
+          refillFromChannel(subscriberId, channelId);
+          refilled++;
+        }
+        setPullOnRead(channelId, false);
+        log.info("Canal {} vuelve a fan-out: {} feeds completados", channelId, refilled);
+        return;
+      }
+
+      HomeFeed.Item item = new HomeFeed.Item(video.getId(), channelId, video.getCreatedAt());
+      BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HomeFeed.class);
+      int pending = 0;
+      int total = 0;
+
+      for (String subscriberId : findSubscriberIds(channelRef)) {
+        Update update = new Update();
+        update.push("items").sort(Sort.by(Sort.Direction.DESC, "createdAt")).slice(capacity).each(item);
+        bulk.upsert(Query.query(Criteria.where("_id").is(subscriberId)), update);
+
+        if (++pending == BATCH_SIZE) {
+          bulk.execute();
+          bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HomeFeed.class);
+          total += pending;
+          pending = 0;
+        }
+      }
+      if (pending > 0) {
+        bulk.execute();
+        total += pending;
+      }
+
+      log.info("Video {} distribuido a {} feeds", video.getId(), total);
+    } catch (Exception e) {
+      log.error("Error distribuyendo video {} a los feeds, el canal pasa a modo pull: {}", video.getId(), e.getMessage(), e);
+      try {
+        // Algunos feeds pueden no tener el video: leer el canal al construir el feed hasta el próximo fan-out
+        setPullOnRead(video.getCreatorId(), true);
+      } catch (Exception ex) {
+        log.error("No se pudo marcar el canal {} en modo pull: {}", video.getCreatorId(), ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Agregar los videos recientes de un canal al feed de un nuevo suscriptor
+   * Sin esto, los videos publicados antes de la suscripción no estarían en su lista precalculada
+   * y la cola los excluye por ser de un canal suscrito
+   */
+  @Async
+  public void onSubscribed(String subscriberId, String channelId) {
+    if (!enabled) {
+      return;
+    }
+
+    try {
+      // Los canales en modo pull ya se leen al construir el feed (y se completan al salir de ese modo)
+      if (isPullOnRead(channelId)) {
+        return;
+      }
+      refillFromChannel(subscriberId, channelId);
+    } catch (Exception e) {
+      log.error("Error completando el feed de {} con el canal {}: {}", subscriberId, channelId, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reemplazar en el feed de un suscriptor los videos de un canal por sus videos recientes
+   */
+  private void refillFromChannel(String subscriberId, String channelId) {
+    UserEntity channel = new UserEntity();
+    channel.setId(channelId);
+    Query recent = Query.query(Criteria.where("creator").is(channel)
+            .and("privacyStatus").in(VideoPrivacyStatus.PUBLIC, VideoPrivacyStatus.UNLISTED)
+            .and("processingStatus").is(VideoProcessingStatus.COMPLETED))
+        .with(Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("_id")))
+        .limit(capacity);
+    recent.fields().include("_id", "createdAt");
+
+    List<HomeFeed.Item> items = mongoTemplate.find(recent, VideoEntity.class).stream()
+        .map(video -> new HomeFeed.Item(video.getId(), channelId, video.getCreatedAt()))
+        .toList();
+    if (items.isEmpty()) {
+      return;
+    }
+
+    // Quitar primero los del canal por si el fan-out ya agregó alguno, para no duplicarlos
+    Query feed = Query.query(Criteria.where("_id").is(subscriberId));
+    mongoTemplate.updateFirst(feed, new Update().pull("items", new Document("creatorId", channelId)), HomeFeed.class);
+    Update update = new Update();
+    update.push("items").sort(Sort.by(Sort.Direction.DESC, "createdAt")).slice(capacity).each(items.toArray());
+    mongoTemplate.upsert(feed, update, HomeFeed.class);
+  }
+
+  private boolean isPullOnRead(String channelId) {
+    return mongoTemplate.exists(Query.query(Criteria.where("_id").is(channelId).and("feedPullOnRead").is(true)), UserEntity.class);
+  }
+
+  private void setPullOnRead(String channelId, boolean pullOnRead) {
+    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(channelId)),
+        new Update().set("feedPullOnRead", pullOnRead), UserEntity.class);
+  }
+
+  private List<String> findSubscriberIds(DBRef channelRef) {
+    Query subscriptions = Query.query(Criteria.where("channel").is(channelRef));
+    subscriptions.fields().include("subscriber");
+    List<String> ids = new ArrayList<>();
+    for (Document subscription : mongoTemplate.find(subscriptions, Document.class, "subscripciones")) {
+      if (subscription.get("subscriber") instanceof DBRef subscriber) {
+        ids.add(subscriber.getId().toString());
+      }
+    }
+    return ids;
+  }
+}
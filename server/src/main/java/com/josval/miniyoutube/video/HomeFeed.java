@@ -0,0 +1,37 @@
+package com.josval.miniyoutube.video;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Feed precalculado de un usuario (fan-out on write)
+ * Lista acotada de los videos más recientes de sus suscripciones, ordenada por createdAt desc
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "home_feeds")
+public class HomeFeed {
+  @MongoId
+  private String id;  // ID del usuario suscriptor
+
+  private List<Item> items;
+
+  @Getter
+  @Setter
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class Item {
+    private String videoId;
+    private String creatorId;
+    private Date createdAt;
+  }
+}
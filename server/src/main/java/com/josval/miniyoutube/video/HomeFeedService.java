@@ -0,0 +1,263 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.video.dto.CursorPage;
+import com.josval.miniyoutube.video.enums.VideoPrivacyStatus;
+import com.josval.miniyoutube.video.enums.VideoProcessingStatus;
+import com.mongodb.DBRef;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Feed de inicio para usuarios autenticados: primero los videos de canales suscritos
+ * (merge k-way de los timelines por canal) y luego el resto de videos públicos
+ * Cada página cuesta como máximo una consulta por grupo de canales con límite size+1,
+ * independientemente de lo profundo que se haya hecho scroll
+ * Con fan-out habilitado se lee primero el feed precalculado del usuario (home_feeds)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HomeFeedService {
+
+  // Orden del feed: más reciente primero, desempate por _id descendente
+  private static final Comparator<VideoEntity> FEED_ORDER = Comparator
+      .comparing(VideoEntity::getCreatedAt, Comparator.reverseOrder())
+      .thenComparing(VideoEntity::getId, Comparator.reverseOrder());
+
+  private static final Sort FEED_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("_id"));
+
+  @Qualifier("publicMongoTemplate")
+  private final MongoTemplate publicMongoTemplate;
+  private final MongoTemplate mongoTemplate;
+  private final FeedFanoutService feedFanoutService;
+
+  @Value("${video.feed.channel-chunk:50}") // Canales por consulta $in sobre creator_created_idx
+  private int channelChunkSize;
+
+  @Value("${video.feed.max-subscriptions:1000}")
+  private int maxSubscriptions;
+
+  /**
+   * Construir una página del feed de inicio a partir del cursor (null = primera página)
+   */
+  public CursorPage<VideoEntity> buildFeed(String userId, FeedCursor cursor, int size) {
+    return buildFeed(userId, findSubscribedChannels(userId), cursor, size);
+  }
+
+  /**
+   * Página por número (page, size) del mismo feed, para clientes que paginan sin cursor
+   * Recorre las páginas anteriores por cursor: cada paso está acotado a size+1 por grupo de canales,
+   * así el costo crece con el número de página pero nunca se carga más de una página en memoria
+   * Retorna una página vacía si el feed termina antes
+   */
+  public List<VideoEntity> buildFeedPage(String userId, int page, int size) {
+    List<DBRef> channels = findSubscribedChannels(userId);
+    FeedCursor cursor = null;
+    for (int current = 0; ; current++) {
+      CursorPage<VideoEntity> feedPage = buildFeed(userId, channels, cursor, size);
+      if (current == page) {
+        return feedPage.getContent();
+      }
+      if (!feedPage.isHasMore()) {
+        return List.of();
+      }
+      cursor = FeedCursor.decode(feedPage.getNextCursor());
+    }
+  }
+
+  private CursorPage<VideoEntity> buildFeed(String userId, List<DBRef> channels, FeedCursor cursor, int size) {
+    char phase = cursor != null && cursor.getPhase() != null ? cursor.getPhase() : FeedCursor.PHASE_SUBSCRIPTIONS;
+    if (channels.isEmpty()) {
+      phase = FeedCursor.PHASE_TAIL;
+    }
+    FeedCursor position = cursor != null && cursor.hasPosition() ? cursor : null;
+
+    List<VideoEntity> content = new ArrayList<>();
+
+    // 1. Videos de suscripciones (feed precalculado si hay fan-out, si no merge de timelines)
+    if (phase == FeedCursor.PHASE_SUBSCRIPTIONS) {
+      List<VideoEntity> subscribed = feedFanoutService.isEnabled()
+          ? readPrecomputed(userId, channels, position, size + 1)
+          : null;
+      if (subscribed == null) {
+        subscribed = mergeChannelTimelines(channels, position, size + 1);
+      }
+      if (subscribed.size() > size) {
+        content.addAll(subscribed.subList(0, size));
+        return new CursorPage<>(content, FeedCursor.of(FeedCursor.PHASE_SUBSCRIPTIONS, content.get(size - 1)).encode(), true, null);
+      }
+      content.addAll(subscribed);
+      position = null; // La cola empieza desde el video más reciente
+    }
+
+    // 2. Cola: videos públicos de canales no suscritos
+    int remaining = size - content.size();
+    List<VideoEntity> tail = findTail(channels, position, remaining + 1);
+    boolean hasMore = tail.size() > remaining;
+    List<VideoEntity> tailPage = hasMore ? tail.subList(0, remaining) : tail;
+    content.addAll(tailPage);
+
+    String nextCursor = null;
+    if (hasMore) {
+      nextCursor = tailPage.isEmpty()
+          ? FeedCursor.start(FeedCursor.PHASE_TAIL).encode()
+          : FeedCursor.of(FeedCursor.PHASE_TAIL, tailPage.get(tailPage.size() - 1)).encode();
+    }
+    return new CursorPage<>(content, nextCursor, hasMore, null);
+  }
+
+  /**
+   * Leer la página desde el feed precalculado (fan-out on write) más los canales en modo pull
+   * Retorna null si la lista no alcanza para una página completa (se usa el merge de timelines)
+   */
+  private List<VideoEntity> readPrecomputed(String userId, List<DBRef> channels, FeedCursor position, int limit) {
+    HomeFeed feed = mongoTemplate.findById(userId, HomeFeed.class);
+    if (feed == null || feed.getItems() == null) {
+      return null;
+    }
+
+    // Solo canales a los que sigue suscrito, posteriores al cursor; los que están en modo pull
+    // (o con un fan-out fallido) se leen de su timeline, su parte del feed puede estar incompleta
+    List<DBRef> pullChannels = findPullChannels(channels);
+    Set<String> pullIds = pullChannels.stream().map(ref -> ref.getId().toString()).collect(Collectors.toSet());
+    Set<String> channelIds = channels.stream().map(ref -> ref.getId().toString())
+        .filter(id -> !pullIds.contains(id))
+        .collect(Collectors.toSet());
+    List<HomeFeed.Item> candidates = feed.getItems().stream()
+        .filter(item -> channelIds.contains(item.getCreatorId()))
+        .filter(item -> position == null || isAfter(item, position))
+        .limit(limit)
+        .toList();
+    if (candidates.size() < limit) {
+      return null;
+    }
+
+    Query query = Query.query(Criteria.where("_id").in(candidates.stream().map(HomeFeed.Item::getVideoId).toList()));
+    Map<String, VideoEntity> videosById = publicMongoTemplate.find(query, VideoEntity.class, "videos_public").stream()
+        .collect(Collectors.toMap(VideoEntity::getId, video -> video));
+    List<VideoEntity> pushed = candidates.stream()
+        .map(item -> videosById.get(item.getVideoId()))
+        .filter(Objects::nonNull)
+        .toList();
+    if (pushed.size() < limit) {
+      return null; // Videos borrados o que dejaron de ser públicos: la página no sería exacta
+    }
+
+    if (pullChannels.isEmpty()) {
+      return pushed;
+    }
+    return mergeSorted(List.of(pushed, mergeChannelTimelines(pullChannels, position, limit)), limit);
+  }
+
+  private boolean isAfter(HomeFeed.Item item, FeedCursor position) {
+    int byDate = item.getCreatedAt().compareTo(position.getCreatedAt());
+    return byDate < 0 || (byDate == 0 && item.getVideoId().compareTo(position.getId()) < 0);
+  }
+
+  /**
+   * Canales suscritos que no se distribuyen por fan-out (demasiados suscriptores o fan-out fallido)
+   */
+  private List<DBRef> findPullChannels(List<DBRef> channels) {
+    Query query = Query.query(Criteria.where("_id").in(channels.stream().map(DBRef::getId).toList())
+        .and("feedPullOnRead").is(true));
+    query.fields().include("_id");
+    return mongoTemplate.find(query, Document.class, "users").stream()
+        .map(user -> new DBRef("users", user.get("_id")))
+        .toList();
+  }
+
+  /**
+   * Merge k-way: cada grupo de canales aporta su timeline ya ordenado (limit) y un heap elige los más recientes
+   */
+  private List<VideoEntity> mergeChannelTimelines(List<DBRef> channels, FeedCursor position, int limit) {
+    List<List<VideoEntity>> timelines = new ArrayList<>();
+    for (int from = 0; from < channels.size(); from += channelChunkSize) {
+      List<DBRef> chunk = channels.subList(from, Math.min(from + channelChunkSize, channels.size()));
+      List<VideoEntity> timeline = findVideos(Criteria.where("creator").in(chunk), position, limit);
+      if (!timeline.isEmpty()) {
+        timelines.add(timeline);
+      }
+    }
+    return mergeSorted(timelines, limit);
+  }
+
+  private List<VideoEntity> mergeSorted(List<List<VideoEntity>> timelines, int limit) {
+    if (timelines.size() == 1) {
+      return timelines.get(0);
+    }
+
+    // Heap de cabezas: {índice del timeline, posición dentro del timeline}
+    PriorityQueue<int[]> heads = new PriorityQueue<>(
+        (a, b) -> FEED_ORDER.compare(timelines.get(a[0]).get(a[1]), timelines.get(b[0]).get(b[1])));
+    for (int i = 0; i < timelines.size(); i++) {
+      heads.add(new int[]{i, 0});
+    }
+
+    List<VideoEntity> merged = new ArrayList<>(limit);
+    while (!heads.isEmpty() && merged.size() < limit) {
+      int[] head = heads.poll();
+      List<VideoEntity> timeline = timelines.get(head[0]);
+      merged.add(timeline.get(head[1]));
+      if (head[1] + 1 < timeline.size()) {
+        heads.add(new int[]{head[0], head[1] + 1});
+      }
+    }
+    return merged;
+  }
+
+  private List<VideoEntity> findTail(List<DBRef> channels, FeedCursor position, int limit) {
+    Criteria criteria = channels.isEmpty() ? new Criteria() : Criteria.where("creator").nin(channels);
+    return findVideos(criteria, position, limit);
+  }
+
+  private List<VideoEntity> findVideos(Criteria filter, FeedCursor position, int limit) {
+    List<Criteria> criteria = new ArrayList<>();
+    criteria.add(Criteria.where("privacyStatus").in(VideoPrivacyStatus.PUBLIC, VideoPrivacyStatus.UNLISTED)
+        .and("processingStatus").is(VideoProcessingStatus.COMPLETED));
+    criteria.add(filter);
+    if (position != null) {
+      criteria.add(position.afterCriteria());
+    }
+
+    Query query = new Query(new Criteria().andOperator(criteria.toArray(new Criteria[0])))
+        .with(FEED_SORT)
+        .limit(limit);
+    return publicMongoTemplate.find(query, VideoEntity.class, "videos_public");
+  }
+
+  /**
+   * Referencias a los canales suscritos, leídas sin resolver los DBRef de usuario
+   * Spring guarda el $id de las referencias como String (igual que el _id de @MongoId String)
+   */
+  private List<DBRef> findSubscribedChannels(String userId) {
+    Query query = Query.query(Criteria.where("subscriber").is(new DBRef("users", userId)))
+        .limit(maxSubscriptions);
+    query.fields().include("channel");
+
+    List<DBRef> channels = new ArrayList<>();
+    for (Document subscription : mongoTemplate.find(query, Document.class, "subscripciones")) {
+      Object channel = subscription.get("channel");
+      if (channel instanceof DBRef ref) {
+        channels.add(ref);
+      }
+    }
+    return channels;
+  }
+}
@@ -0,0 +1,50 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.video.enums.TranscodingJobStatus;
+import com.josval.miniyoutube.video.enums.TranscodingLane;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "transcoding_jobs")
+@CompoundIndexes({
+    @CompoundIndex(name = "status_priority_round_enqueued_idx",
+        def = "{'status': 1, 'priority': 1, 'fairRound': 1, 'enqueuedAt': 1}"),
+    @CompoundIndex(name = "creator_status_idx", def = "{'creatorId': 1, 'status': 1}")
+})
+public class TranscodingJob {
+  @MongoId
+  private String id;
+
+  @Indexed
+  private String videoId;
+
+  private String creatorId;
+  private String sourcePath;  // Archivo local del nodo dueño; si es null el original se descarga de S3
+  private String ownerNode;   // Nodo que tiene sourcePath en disco (solo sus workers pueden tomar el trabajo)
+  private TranscodingJobStatus status;
+  private TranscodingLane lane;
+  private int priority;  // Copia numérica de lane.priority para ordenar en la consulta
+  private boolean holdsSlot;  // Conserva el lugar reservado por la subida (se devuelve al terminar)
+
+  // Ronda de reparto justo: n-ésimo trabajo pendiente del creador al encolar (round robin entre creadores)
+  private long fairRound;
+
+  private Date enqueuedAt;
+  private Date startedAt;
+  private Date heartbeatAt;
+  private String workerId;
+  private Integer attempts;
+}
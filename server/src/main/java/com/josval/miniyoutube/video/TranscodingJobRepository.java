@@ -0,0 +1,17 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.video.enums.TranscodingJobStatus;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+@Repository
+public interface TranscodingJobRepository extends MongoRepository<TranscodingJob, String> {
+
+  // Trabajos admitidos de un creador (para calcular su ronda de reparto)
+  long countByCreatorIdAndStatusIn(String creatorId, Collection<TranscodingJobStatus> statuses);
+
+  // Verificar si un video ya tiene un trabajo pendiente
+  boolean existsByVideoId(String videoId);
+}
@@ -0,0 +1,324 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.exception.TranscodingQueueFullException;
+import com.josval.miniyoutube.video.enums.TranscodingJobStatus;
+import com.josval.miniyoutube.video.enums.TranscodingLane;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cola acotada de transcodificación persistida en MongoDB
+ * Limita los trabajos admitidos (archivos temporales en disco) y atiende primero por carril
+ * (primera calidad, calidades restantes, re-codificaciones) y dentro de cada carril en
+ * round robin entre creadores para que una ráfaga de un usuario no bloquee al resto
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TranscodingQueueService {
+
+  private static final Collection<TranscodingJobStatus> ADMITTED =
+      EnumSet.of(TranscodingJobStatus.QUEUED, TranscodingJobStatus.RUNNING);
+
+  private final TranscodingJobRepository transcodingJobRepository;
+  private final MongoTemplate mongoTemplate;
+
+  private static final String NODES_COLLECTION = "transcoding_nodes";
+  private static final String SLOTS_COLLECTION = "transcoding_slots";
+  private static final String SLOTS_ID = "uploads";
+  private static final String RESERVATIONS_COLLECTION = "transcoding_reservations";
+
+  // Identificador estable del nodo (se conserva entre reinicios); los trabajos con archivo local quedan ligados a él
+  private String nodeId;
+
+  // Aviso a los workers locales de que hay trabajo nuevo (evita esperar al siguiente sondeo)
+  private final Semaphore wakeups = new Semaphore(0);
+
+  @Value("${video.queue.max-depth:20}")
+  private long maxDepth;
+
+  @Value("${video.queue.retry-after-seconds:60}")
+  private long retryAfterSeconds;
+
+  @Value("${video.queue.reservation-ttl-ms:1800000}") // Lo que puede tardar una subida en guardarse y encolarse
+  private long reservationTtlMs;
+
+  @Value("${video.transcoding.workers:2}")
+  private int localWorkers;
+
+  @Value("${video.transcoding.node-id:}")
+  private String configuredNodeId;
+
+  /**
+   * Resolver el id del nodo: configurado, si no el hostname (estable en contenedores y máquinas),
+   * y como último recurso uno aleatorio
+   */
+  @PostConstruct
+  void resolveNodeId() {
+    if (configuredNodeId != null && !configuredNodeId.isBlank()) {
+      nodeId = configuredNodeId;
+      return;
+    }
+    try {
+      nodeId = InetAddress.getLocalHost().getHostName();
+    } catch (Exception e) {
+      nodeId = UUID.randomUUID().toString().substring(0, 8);
+      log.warn("No se pudo obtener el hostname, usando id de nodo aleatorio {}", nodeId);
+    }
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Indica si este nodo ejecuta workers (si no, los originales deben quedar en S3 para otros nodos)
+   */
+  public boolean hasLocalWorkers() {
+    return localWorkers > 0;
+  }
+
+  /**
+   * Reservar atómicamente un lugar en la cola para una subida; lanza TranscodingQueueFullException si está llena
+   * El contador solo se incrementa si está por debajo del máximo, así dos subidas concurrentes no
+   * pueden ocupar el último lugar. Si el documento ya existe y está lleno, el upsert choca con su _id
+   * La reserva queda registrada con vencimiento hasta que la subida se encola (confirmReservation), así
+   * reconcileSlots() puede recuperar los lugares de subidas que nunca llegaron a encolarse
+   * Retorna el id de la reserva
+   */
+  public String reserveSlot() {
+    String reservationId = UUID.randomUUID().toString();
+    mongoTemplate.insert(new Document("_id", reservationId)
+        .append("expiresAt", new Date(System.currentTimeMillis() + reservationTtlMs)), RESERVATIONS_COLLECTION);
+
+    // Con la cola llena se reconcilia una vez antes de rechazar, por si hay lugares perdidos
+    if (incrementSlots() || (reconcileSlots() && incrementSlots())) {
+      return reservationId;
+    }
+    mongoTemplate.remove(Query.query(Criteria.where("_id").is(reservationId)), RESERVATIONS_COLLECTION);
+    log.warn("Cola de transcodificación llena ({} lugares), rechazando subida", maxDepth);
+    throw new TranscodingQueueFullException(retryAfterSeconds);
+  }
+
+  /**
+   * La subida quedó encolada: su lugar pasa a estar representado por el trabajo (holdsSlot)
+   */
+  public void confirmReservation(String reservationId) {
+    mongoTemplate.remove(Query.query(Criteria.where("_id").is(reservationId)), RESERVATIONS_COLLECTION);
+  }
+
+  /**
+   * La subida falló antes de encolarse: devolver su lugar (una sola vez aunque se llame de nuevo)
+   */
+  public void cancelReservation(String reservationId) {
+    if (mongoTemplate.remove(Query.query(Criteria.where("_id").is(reservationId)), RESERVATIONS_COLLECTION)
+        .getDeletedCount() > 0) {
+      releaseSlot();
+    }
+  }
+
+  /**
+   * Recalcular el contador de lugares a partir del estado real: reservas vigentes más videos con
+   * trabajos que conservan su lugar. Corrige los lugares perdidos por caídas entre la reserva y el
+   * encolado, o entre el traspaso PRIMARY -> REMAINING y complete()
+   * Solo escribe si nadie cambió el contador mientras se contaba (si no, se corrige en la siguiente pasada)
+   * Retorna true si el contador bajó
+   */
+  public boolean reconcileSlots() {
+    Date now = new Date();
+    mongoTemplate.remove(Query.query(Criteria.where("expiresAt").lt(now)), RESERVATIONS_COLLECTION);
+
+    Document slots = mongoTemplate.findById(SLOTS_ID, Document.class, SLOTS_COLLECTION);
+    long current = slots != null && slots.get("reserved") != null ? ((Number) slots.get("reserved")).longValue() : 0;
+
+    // Primero las reservas y luego los trabajos: una subida que se encola entre medio cuenta dos
+    // veces (se corrige en la siguiente pasada) en lugar de no contarse
+    long reservations = mongoTemplate.count(Query.query(Criteria.where("expiresAt").gte(now)), RESERVATIONS_COLLECTION);
+    long held = mongoTemplate.findDistinct(Query.query(Criteria.where("holdsSlot").is(true)),
+        "videoId", TranscodingJob.class, String.class).size();
+    long actual = reservations + held;
+    if (actual == current) {
+      return false;
+    }
+
+    Query unchanged = Query.query(Criteria.where("_id").is(SLOTS_ID).and("reserved").is(current));
+    if (mongoTemplate.updateFirst(unchanged, new Update().set("reserved", actual), SLOTS_COLLECTION)
+        .getModifiedCount() == 0) {
+      return false;
+    }
+    log.warn("Contador de lugares de la cola corregido de {} a {}", current, actual);
+    return actual < current;
+  }
+
+  private boolean incrementSlots() {
+    Query query = Query.query(Criteria.where("_id").is(SLOTS_ID).and("reserved").lt(maxDepth));
+    try {
+      mongoTemplate.findAndModify(query, new Update().inc("reserved", 1),
+          FindAndModifyOptions.options().upsert(true), Document.class, SLOTS_COLLECTION);
+      return true;
+    } catch (DuplicateKeyException e) {
+      return false;
+    }
+  }
+
+  private void releaseSlot() {
+    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(SLOTS_ID).and("reserved").gt(0)),
+        new Update().inc("reserved", -1), SLOTS_COLLECTION);
+  }
+
+  /**
+   * Encolar el procesamiento de un video en un carril
+   * La ronda del trabajo es la cantidad de trabajos pendientes del creador, así cada creador
+   * obtiene un turno por ronda independientemente de cuántos videos haya subido
+   */
+  public TranscodingJob enqueue(String videoId, String creatorId, String sourcePath, TranscodingLane lane) {
+    return enqueue(videoId, creatorId, sourcePath, lane, false);
+  }
+
+  /**
+   * Encolar un trabajo que conserva el lugar reservado por la subida (ver reserveSlot)
+   * El lugar se devuelve en complete() del último trabajo que lo conserve
+   */
+  public TranscodingJob enqueue(String videoId, String creatorId, String sourcePath, TranscodingLane lane,
+                                boolean holdsSlot) {
+    TranscodingJob job = new TranscodingJob();
+    job.setVideoId(videoId);
+    job.setCreatorId(creatorId);
+    job.setSourcePath(sourcePath);
+    job.setOwnerNode(sourcePath != null ? nodeId : null);
+    job.setStatus(TranscodingJobStatus.QUEUED);
+    job.setLane(lane);
+    job.setPriority(lane.getPriority());
+    job.setHoldsSlot(holdsSlot);
+    job.setFairRound(creatorId != null
+        ? transcodingJobRepository.countByCreatorIdAndStatusIn(creatorId, ADMITTED)
+        : 0);
+    job.setEnqueuedAt(new Date());
+    job.setAttempts(0);
+
+    job = transcodingJobRepository.save(job);
+    wakeups.release();
+
+    log.info("Video {} encolado para transcodificación (carril {}, ronda {})", videoId, lane, job.getFairRound());
+    return job;
+  }
+
+  /**
+   * Reclamar atómicamente el siguiente trabajo en cola (carril más prioritario, menor ronda, el más antiguo)
+   * Solo se consideran trabajos sin dueño o cuyo archivo está en este nodo
+   */
+  public TranscodingJob claimNext(String workerId) {
+    Date now = new Date();
+    Query query = Query.query(new Criteria().andOperator(
+            Criteria.where("status").is(TranscodingJobStatus.QUEUED),
+            new Criteria().orOperator(
+                Criteria.where("ownerNode").is(null),
+                Criteria.where("ownerNode").is(nodeId))))
+        .with(Sort.by(Sort.Order.asc("priority"), Sort.Order.asc("fairRound"), Sort.Order.asc("enqueuedAt")));
+    Update update = new Update()
+        .set("status", TranscodingJobStatus.RUNNING)
+        .set("workerId", workerId)
+        .set("startedAt", now)
+        .set("heartbeatAt", now)
+        .inc("attempts", 1);
+
+    return mongoTemplate.findAndModify(query, update,
+        FindAndModifyOptions.options().returnNew(true), TranscodingJob.class);
+  }
+
+  /**
+   * Esperar aviso de trabajo nuevo (o hasta el timeout)
+   */
+  public void awaitWork(long timeoutMs) throws InterruptedException {
+    if (wakeups.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+      wakeups.drainPermits();
+    }
+  }
+
+  /**
+   * Actualizar el heartbeat del nodo y de los trabajos en ejecución
+   * El heartbeat del nodo mantiene ligados a él sus trabajos en cola (ver requeueStale)
+   */
+  public void heartbeat(Collection<String> jobIds) {
+    mongoTemplate.upsert(Query.query(Criteria.where("_id").is(nodeId)),
+        new Update().set("heartbeatAt", new Date()), NODES_COLLECTION);
+    if (jobIds.isEmpty()) {
+      return;
+    }
+    mongoTemplate.updateMulti(
+        Query.query(Criteria.where("_id").in(jobIds).and("status").is(TranscodingJobStatus.RUNNING)),
+        new Update().set("heartbeatAt", new Date()),
+        TranscodingJob.class);
+  }
+
+  /**
+   * Marcar un trabajo como terminado (se elimina de la cola, con éxito o no) y devolver su lugar
+   * Solo devuelve el lugar quien elimina el trabajo: si un trabajo re-encolado terminó en dos
+   * workers, el lugar no se libera dos veces
+   */
+  public void complete(TranscodingJob job) {
+    long deleted = mongoTemplate.remove(Query.query(Criteria.where("_id").is(job.getId())), TranscodingJob.class)
+        .getDeletedCount();
+    if (deleted > 0 && job.isHoldsSlot()) {
+      releaseSlot();
+    }
+  }
+
+  /**
+   * Devolver a la cola los trabajos RUNNING sin heartbeat reciente (worker caído) y liberar los
+   * trabajos en cola ligados a un nodo sin heartbeat reciente (nodo caído o retirado)
+   * Se libera el dueño: el worker que lo tome usa el archivo local si existe o descarga el original
+   */
+  public long requeueStale(Date cutoff) {
+    long requeued = mongoTemplate.updateMulti(
+        Query.query(Criteria.where("status").is(TranscodingJobStatus.RUNNING)
+            .and("heartbeatAt").lt(cutoff)),
+        new Update()
+            .set("status", TranscodingJobStatus.QUEUED)
+            .unset("workerId")
+            .unset("ownerNode"),
+        TranscodingJob.class).getModifiedCount();
+
+    Query aliveQuery = Query.query(Criteria.where("heartbeatAt").gte(cutoff));
+    aliveQuery.fields().include("_id");
+    List<Object> aliveNodes = mongoTemplate.find(aliveQuery, Document.class, NODES_COLLECTION).stream()
+        .map(node -> node.get("_id"))
+        .toList();
+    long released = mongoTemplate.updateMulti(
+        Query.query(Criteria.where("status").is(TranscodingJobStatus.QUEUED)
+            .and("ownerNode").ne(null).nin(aliveNodes)),
+        new Update().unset("ownerNode"),
+        TranscodingJob.class).getModifiedCount();
+    if (released > 0) {
+      log.warn("Liberados {} trabajos en cola de nodos sin heartbeat", released);
+    }
+    return requeued + released;
+  }
+
+  /**
+   * Verificar si un video tiene un trabajo pendiente en la cola
+   */
+  public boolean hasJob(String videoId) {
+    return transcodingJobRepository.existsByVideoId(videoId);
+  }
+}
@@ -0,0 +1,160 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.video.enums.TranscodingLane;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool fijo de workers que consumen la cola de transcodificación
+ * La concurrencia de ffmpeg queda limitada a video.transcoding.workers por nodo
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TranscodingWorker {
+
+  private final TranscodingQueueService transcodingQueueService;
+  private final VideoProcessingService videoProcessingService;
+
+  private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+  private volatile boolean running;
+  private ExecutorService executor;
+
+  @Value("${video.transcoding.workers:2}")
+  private int workers;
+
+  @Value("${video.transcoding.poll-ms:5000}")
+  private long pollMs;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (workers <= 0) {
+      log.info("Workers de transcodificación deshabilitados en este nodo");
+      return;
+    }
+
+    running = true;
+    AtomicInteger counter = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(workers, runnable -> {
+      Thread thread = new Thread(runnable, "transcoding-worker-" + counter.incrementAndGet());
+      thread.setDaemon(false);
+      return thread;
+    });
+
+    // Registrar el nodo antes de reclamar trabajos, para que la recuperación no libere los suyos
+    heartbeat();
+    for (int i = 0; i < workers; i++) {
+      executor.submit(this::runLoop);
+    }
+    log.info("Iniciados {} workers de transcodificación (nodo {})", workers, transcodingQueueService.getNodeId());
+  }
+
+  /**
+   * Dejar de reclamar trabajos; los que están en curso terminan (los hilos no son daemon)
+   */
+  @PreDestroy
+  public void stop() {
+    running = false;
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Mantener vivo el heartbeat del nodo y de los trabajos en curso (los RUNNING sin heartbeat se re-encolan
+   * y los QUEUED de un nodo sin heartbeat se liberan para otros nodos)
+   */
+  @Scheduled(fixedDelayString = "${video.transcoding.heartbeat-ms:30000}")
+  public void heartbeat() {
+    if (!running) {
+      return;  // Sin workers en este nodo no hay trabajos ligados a él
+    }
+    try {
+      transcodingQueueService.heartbeat(runningJobs);
+    } catch (Exception e) {
+      log.warn("Error actualizando heartbeat de trabajos: {}", e.getMessage());
+    }
+  }
+
+  private void runLoop() {
+    String workerId = transcodingQueueService.getNodeId() + "/" + Thread.currentThread().getName();
+
+    while (running && !Thread.currentThread().isInterrupted()) {
+      try {
+        TranscodingJob job = transcodingQueueService.claimNext(workerId);
+        if (job == null) {
+          transcodingQueueService.awaitWork(pollMs);
+          continue;
+        }
+        process(job);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Exception e) {
+        log.error("Error en worker de transcodificación: {}", e.getMessage(), e);
+        sleepQuietly();
+      }
+    }
+  }
+
+  private void process(TranscodingJob job) {
+    runningJobs.add(job.getId());
+    try {
+      log.info("Worker procesando video {} en carril {} (intento {})", job.getVideoId(), job.getLane(), job.getAttempts());
+      TranscodingLane lane = job.getLane() != null ? job.getLane() : TranscodingLane.PRIMARY;
+
+      switch (lane) {
+        case PRIMARY -> {
+          // Las calidades superiores vuelven a la cola detrás de las primeras calidades de otros videos
+          // (ligadas a este nodo, que ya tiene el original en disco)
+          String sourcePath = resolveSource(job);
+          if (videoProcessingService.processFirstRendition(job.getVideoId(), sourcePath)) {
+            // El archivo sigue en disco: el lugar de la subida pasa al trabajo de las calidades restantes
+            transcodingQueueService.enqueue(job.getVideoId(), job.getCreatorId(), sourcePath,
+                TranscodingLane.REMAINING, job.isHoldsSlot());
+            job.setHoldsSlot(false);
+          }
+        }
+        case REMAINING -> videoProcessingService.processRemainingRenditions(job.getVideoId(), resolveSource(job));
+        case BACKFILL -> videoProcessingService.reencodeRenditions(job.getVideoId(),
+            videoProcessingService.downloadSource(job.getVideoId()));
+      }
+    } catch (Exception e) {
+      log.error("Error procesando video {}: {}", job.getVideoId(), e.getMessage(), e);
+    } finally {
+      runningJobs.remove(job.getId());
+      transcodingQueueService.complete(job);
+    }
+  }
+
+  /**
+   * Archivo local del trabajo, o el original descargado de S3 si no está en este nodo
+   */
+  private String resolveSource(TranscodingJob job) throws IOException {
+    if (job.getSourcePath() != null && new File(job.getSourcePath()).exists()) {
+      return job.getSourcePath();
+    }
+    return videoProcessingService.downloadSource(job.getVideoId());
+  }
+
+  private void sleepQuietly() {
+    try {
+      Thread.sleep(pollMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.config.NodeRole;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * Ranking de tendencias con decaimiento exponencial (forward decay)
+ * Cada evento suma peso * e^(λ·(t - landmark)), así las puntuaciones no hay que decaerlas en cada tick:
+ * el orden entre dos videos solo cambia cuando llega un evento. Un TreeSet acotado mantiene el top-K
+ * y el mapa completo permite que un video desplazado vuelva a entrar; leer el ranking cuesta O(K)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TrendingService {
+
+  private static final String SNAPSHOT_ID = "global";
+  private static final double RESCALE_EXPONENT = 50;  // Re-escalar antes de que e^x pierda precisión
+  private static final double MIN_DECAYED_SCORE = 0.01;  // Por debajo se olvida el video (fuera del top)
+
+  private final MongoTemplate mongoTemplate;
+  private final NodeRole nodeRole;
+
+  private final Map<String, Double> scores = new HashMap<>();
+  private final TreeSet<Ranked> top = new TreeSet<>(
+      Comparator.comparingDouble(Ranked::score).thenComparing(Ranked::videoId));
+  private long landmarkMillis = System.currentTimeMillis();
+  private boolean changedSinceSnapshot;  // Solo se escribe la instantánea si este nodo recibió eventos
+
+  @Value("${video.trending.half-life-hours:24}")
+  private double halfLifeHours;
+
+  @Value("${video.trending.capacity:200}")
+  private int capacity;
+
+  @Value("${video.trending.snapshot-size:2000}")
+  private int snapshotSize;
+
+  @Value("${video.trending.weight.view:1}")
+  private double viewWeight;
+
+  @Value("${video.trending.weight.like:3}")
+  private double likeWeight;
+
+  @Value("${video.trending.weight.comment:5}")
+  private double commentWeight;
+
+  public void onView(String videoId) {
+    add(videoId, viewWeight);
+  }
+
+  public void onLike(String videoId) {
+    add(videoId, likeWeight);
+  }
+
+  public void onComment(String videoId) {
+    add(videoId, commentWeight);
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * IDs de los videos con mayor puntuación, de mayor a menor
+   */
+  public synchronized List<String> topVideoIds(int limit) {
+    List<String> ids = new ArrayList<>(Math.min(limit, top.size()));
+    Iterator<Ranked> iterator = top.descendingIterator();
+    while (iterator.hasNext() && ids.size() < limit) {
+      ids.add(iterator.next().videoId());
+    }
+    return ids;
+  }
+
+  private synchronized void add(String videoId, double weight) {
+    if (videoId == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    double exponent = lambda() * (now - landmarkMillis);
+    if (exponent > RESCALE_EXPONENT) {
+      rescale(now);
+      exponent = 0;
+    }
+
+    Double previous = scores.get(videoId);
+    double updated = (previous != null ? previous : 0) + weight * Math.exp(exponent);
+    scores.put(videoId, updated);
+    changedSinceSnapshot = true;
+    if (previous != null) {
+      top.remove(new Ranked(videoId, previous));
+    }
+    offerTop(videoId, updated);
+  }
+
+  private void offerTop(String videoId, double score) {
+    if (top.size() < capacity || score > top.first().score()) {
+      top.add(new Ranked(videoId, score));
+      if (top.size() > capacity) {
+        top.pollFirst();
+      }
+    }
+  }
+
+  /**
+   * Mover el landmark a "ahora" dividiendo todas las puntuaciones (no cambia el orden)
+   */
+  private void rescale(long now) {
+    double factor = Math.exp(-lambda() * (now - landmarkMillis));
+    scores.replaceAll((videoId, score) -> score * factor);
+    top.clear();
+    scores.forEach(this::offerTop);
+    landmarkMillis = now;
+    log.info("Tendencias re-escaladas ({} videos)", scores.size());
+  }
+
+  /**
+   * Olvidar los videos cuya puntuación decayó por debajo del mínimo y no están en el top
+   */
+  @Scheduled(fixedDelayString = "${video.trending.prune-ms:600000}")
+  public synchronized void prune() {
+    double threshold = MIN_DECAYED_SCORE * Math.exp(lambda() * (System.currentTimeMillis() - landmarkMillis));
+    int before = scores.size();
+    scores.entrySet().removeIf(entry -> entry.getValue() < threshold
+        && !top.contains(new Ranked(entry.getKey(), entry.getValue())));
+    if (before != scores.size()) {
+      log.debug("Tendencias: {} videos olvidados", before - scores.size());
+    }
+  }
+
+  /**
+   * Guardar las puntuaciones más altas para restaurarlas al reiniciar
+   * Con varios nodos API cada uno ordena su propio tráfico y se restaura la última instantánea escrita
+   * Un nodo sin eventos propios desde la última escritura (o un worker) no pisa la de otro nodo
+   */
+  @Scheduled(
+      fixedDelayString = "${video.trending.snapshot-ms:300000}",
+      initialDelayString = "${video.trending.snapshot-ms:300000}")
+  public void snapshot() {
+    if (!nodeRole.servesTraffic()) {
+      return;
+    }
+    TrendingSnapshot snapshot;
+    synchronized (this) {
+      if (scores.isEmpty() || !changedSinceSnapshot) {
+        return;
+      }
+      changedSinceSnapshot = false;
+      PriorityQueue<Map.Entry<String, Double>> best = new PriorityQueue<>(Map.Entry.comparingByValue());
+      for (Map.Entry<String, Double> entry : scores.entrySet()) {
+        best.offer(Map.entry(entry.getKey(), entry.getValue()));
+        if (best.size() > snapshotSize) {
+          best.poll();
+        }
+      }
+      List<TrendingSnapshot.Score> saved = best.stream()
+          .map(entry -> new TrendingSnapshot.Score(entry.getKey(), entry.getValue()))
+          .toList();
+      snapshot = new TrendingSnapshot(SNAPSHOT_ID, landmarkMillis, saved, new Date());
+    }
+
+    try {
+      mongoTemplate.save(snapshot);
+    } catch (Exception e) {
+      synchronized (this) {
+        changedSinceSnapshot = true;
+      }
+      log.error("Error guardando instantánea de tendencias: {}", e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void snapshotOnShutdown() {
+    snapshot();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void restore() {
+    if (!nodeRole.servesTraffic()) {
+      return;  // Los workers no reciben eventos: no necesitan el ranking
+    }
+    try {
+      TrendingSnapshot snapshot = mongoTemplate.findById(SNAPSHOT_ID, TrendingSnapshot.class);
+      if (snapshot == null || snapshot.getScores() == null) {
+        return;
+      }
+      // Llevar las puntuaciones guardadas al landmark actual (pueden haber llegado eventos antes)
+      double factor = Math.exp(-lambda() * (landmarkMillis - snapshot.getLandmarkMillis()));
+      for (TrendingSnapshot.Score score : snapshot.getScores()) {
+        scores.merge(score.getVideoId(), score.getScore() * factor, Double::sum);
+      }
+      top.clear();
+      scores.forEach(this::offerTop);
+      log.info("Tendencias restauradas: {} videos", scores.size());
+    } catch (Exception e) {
+      log.error("Error restaurando tendencias: {}", e.getMessage());
+    }
+  }
+
+  private double lambda() {
+    return Math.log(2) / (halfLifeHours * 3_600_000);
+  }
+
+  private record Ranked(String videoId, double score) {
+  }
+}
@@ -0,0 +1,38 @@
+package com.josval.miniyoutube.video;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Instantánea de las puntuaciones de tendencias para restaurarlas al reiniciar
+ * Las puntuaciones son relativas al landmark (forward decay), por eso se guarda junto a ellas
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "trending_snapshots")
+public class TrendingSnapshot {
+  @MongoId
+  private String id;
+
+  private long landmarkMillis;
+  private List<Score> scores;
+  private Date savedAt;
+
+  @Getter
+  @Setter
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class Score {
+    private String videoId;
+    private double score;
+  }
+}
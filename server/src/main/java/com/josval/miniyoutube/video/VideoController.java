@@ -2,23 +2,29 @@ package com.josval.miniyoutube.video;
 
 import com.josval.miniyoutube.comment.dto.CommentResponse;
 import com.josval.miniyoutube.comment.dto.CreateCommentRequest;
+import com.josval.miniyoutube.comment.enums.CommentSort;
 import com.josval.miniyoutube.video.dto.UploadVideoRequest;
 import com.josval.miniyoutube.video.dto.VideoResponse;
 import com.josval.miniyoutube.video.enums.VideoPrivacyStatus;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/videos")
@@ -29,9 +35,14 @@ public class VideoController {
   private final com.josval.miniyoutube.comment.CommentService commentService;
 
   @GetMapping
-  public ResponseEntity<Page<VideoResponse>> listPublicVideos(
+  @Operation(summary = "Listar videos públicos",
+      description = "Con el parámetro cursor (vacío para la primera página) pagina por keyset y devuelve nextCursor; "
+          + "con sesión iniciada muestra primero los videos de canales suscritos. Sin cursor, paginación por número de página")
+  public ResponseEntity<?> listPublicVideos(
       @RequestParam(defaultValue = "0") int page,
-      @RequestParam(defaultValue = "10") int size) {
+      @RequestParam(defaultValue = "10") int size,
+      @Parameter(description = "Cursor de continuación (vacío = primera página)") @RequestParam(required = false) String cursor,
+      @Parameter(description = "Incluir el total de videos (solo modo cursor)") @RequestParam(defaultValue = "false") boolean includeTotal) {
     // Obtener usuario autenticado si existe
     Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
     String userEmail = null;
@@ -39,6 +50,10 @@ public class VideoController {
       userEmail = authentication.getName();
     }
 
+    if (cursor != null) {
+      return ResponseEntity.ok(videoService.listPublicVideosByCursor(userEmail, cursor, size, includeTotal));
+    }
+
     Page<VideoResponse> videos = videoService.listPublicVideos(userEmail, page, size);
     return ResponseEntity.ok(videos);
   }
@@ -76,9 +91,18 @@ public class VideoController {
     return ResponseEntity.ok(response);
   }
 
+  @GetMapping("/trending")
+  @Operation(summary = "Videos en tendencia",
+      description = "Ranking por vistas, likes y comentarios recientes con decaimiento exponencial")
+  public ResponseEntity<List<VideoResponse>> listTrending(
+      @Parameter(description = "Cantidad de videos (máximo 100)") @RequestParam(defaultValue = "20") int limit) {
+    return ResponseEntity.ok(videoService.listTrending(limit));
+  }
+
   @GetMapping("/{id}")
   public ResponseEntity<VideoResponse> getVideo(
-      @Parameter(description = "ID del video") @PathVariable String id) {
+      @Parameter(description = "ID del video") @PathVariable String id,
+      HttpServletRequest request) {
     try {
       // Obtener usuario autenticado (puede ser null si no está autenticado)
       Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -88,13 +112,35 @@ public class VideoController {
         userEmail = authentication.getName();
       }
 
-      VideoResponse video = videoService.getVideoById(id, userEmail);
+      VideoResponse video = videoService.getVideoById(id, userEmail, request);
       return ResponseEntity.ok(video);
     } catch (RuntimeException e) {
       return ResponseEntity.notFound().build();
     }
   }
 
+  @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  @Operation(summary = "Cambios en vivo de un video (SSE)",
+      description = "Eventos \"update\" con comentarios nuevos, variación de likes/dislikes y estado de procesamiento, "
+          + "agrupados en ventanas cortas; solo se envían los campos que cambiaron")
+  public SseEmitter streamVideoEvents(
+      @Parameter(description = "ID del video") @PathVariable String id) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    String userEmail = null;
+    if (authentication != null && authentication.isAuthenticated()
+        && !"anonymousUser".equals(authentication.getPrincipal())) {
+      userEmail = authentication.getName();
+    }
+
+    try {
+      return videoService.subscribeEvents(id, userEmail);
+    } catch (ResponseStatusException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+    }
+  }
+
   @GetMapping("/my-videos")
   public ResponseEntity<Page<VideoResponse>> listMyVideos(
       @Parameter(description = "Número de página (empezando en 0)") @RequestParam(defaultValue = "0") int page,
@@ -121,10 +167,15 @@ public class VideoController {
   }
 
   @GetMapping("/{videoId}/comments")
-  public ResponseEntity<Page<CommentResponse>> listVideoComments(
+  @Operation(summary = "Listar comentarios principales",
+      description = "Con el parámetro cursor (vacío para la primera página) pagina por keyset y admite sort=TOP; "
+          + "sin cursor, paginación por número de página ordenada por más recientes")
+  public ResponseEntity<?> listVideoComments(
       @PathVariable String videoId,
       @RequestParam(defaultValue = "0") int page,
-      @RequestParam(defaultValue = "20") int size) {
+      @RequestParam(defaultValue = "20") int size,
+      @Parameter(description = "NEWEST (por defecto) o TOP, solo modo cursor") @RequestParam(required = false) CommentSort sort,
+      @Parameter(description = "Cursor de continuación (vacío = primera página)") @RequestParam(required = false) String cursor) {
     Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
     String userEmail = null;
     if (authentication != null && authentication.isAuthenticated()
@@ -133,8 +184,13 @@ public class VideoController {
     }
 
     try {
+      if (cursor != null) {
+        return ResponseEntity.ok(commentService.listVideoCommentsByCursor(videoId, userEmail, sort, cursor, size));
+      }
       Page<CommentResponse> comments = commentService.listVideoComments(videoId, userEmail, page, size);
       return ResponseEntity.ok(comments);
+    } catch (ResponseStatusException e) {
+      throw e;
     } catch (RuntimeException e) {
       return ResponseEntity.status(403).build();
     }
@@ -2,14 +2,17 @@ package com.josval.miniyoutube.video;
 
 import java.util.Date;
 import java.util.Collection;
+import java.util.Map;
 
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.MongoId;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.josval.miniyoutube.user.UserEntity;
 import com.josval.miniyoutube.video.enums.VideoPrivacyStatus;
 import com.josval.miniyoutube.video.enums.VideoProcessingStatus;
@@ -25,8 +28,8 @@ import lombok.Setter;
 @NoArgsConstructor
 @Document(collection = "videos")
 @CompoundIndexes({
-    @CompoundIndex(name = "privacy_processing_created_idx",
-        def = "{'privacyStatus': 1, 'processingStatus': 1, 'createdAt': -1}"),
+    @CompoundIndex(name = "privacy_processing_created_id_idx",
+        def = "{'privacyStatus': 1, 'processingStatus': 1, 'createdAt': -1, '_id': -1}"),
     @CompoundIndex(name = "creator_created_idx",
         def = "{'creator': 1, 'createdAt': -1}")
 })
@@ -34,9 +37,12 @@ public class VideoEntity {
   @MongoId
   private String id;
 
-  @DBRef
+  @JsonIgnore
+  @DBRef(lazy = true)  // Solo se resuelve si se accede; para mostrar se usa creatorSummary
   private UserEntity creator;
 
+  private CreatorSummary creatorSummary;  // Snapshot (id, channelName, avatarURL) del creador
+
   private String title;
   private String description;
   private VideoPrivacyStatus privacyStatus;
@@ -53,7 +59,25 @@ public class VideoEntity {
   private String hlsManifestUrl;  // URL del archivo .m3u8 master
   private String originalVideoUrl;  // Video original sin procesar
   private Collection<String> availableQualities;  // Calidades disponibles: ["360p", "480p", ...]
+  private Map<String, Integer> renditionBitrates;  // Bitrate (kbps) elegido por calidad según la complejidad del contenido
+  private String storyboardUrl;  // Índice WebVTT de las hojas de sprites para previews al hacer seek
+  private Date processingUpdatedAt;  // Último avance del procesamiento (heartbeat para detectar trabajos colgados)
+  private Integer processingAttempts;  // Reintentos de procesamiento lanzados por la recuperación
+  private Date renditionsSupersededAt;  // Última re-codificación: las carpetas HLS anteriores se borran tras un período de gracia
 
   @CreatedDate
   private Date createdAt;
+
+  /**
+   * ID del creador sin resolver el DBRef (snapshot o referencia del proxy lazy)
+   */
+  public String getCreatorId() {
+    if (creatorSummary != null && creatorSummary.getId() != null) {
+      return creatorSummary.getId();
+    }
+    if (creator instanceof LazyLoadingProxy proxy) {
+      return proxy.toDBRef().getId().toString();
+    }
+    return creator != null ? creator.getId() : null;
+  }
 }
@@ -0,0 +1,305 @@
+package com.josval.miniyoutube.video;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.josval.miniyoutube.comment.dto.CommentResponse;
+import com.josval.miniyoutube.video.dto.LiveUpdate;
+import com.josval.miniyoutube.video.enums.VideoProcessingStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Difusión de cambios de un video por Server-Sent Events
+ * Los comentarios nuevos, las variaciones de likes/dislikes y el estado de procesamiento se acumulan
+ * por video y se envían como un único evento "update" por ventana (video.events.coalesce-ms),
+ * serializado una sola vez para todos los espectadores. Las conexiones son asíncronas (no ocupan
+ * un hilo de request mientras están abiertas)
+ * Cada espectador tiene su propia cola de envíos, drenada por un solo hilo a la vez, así recibe los
+ * eventos en orden; el que acumula demasiados eventos o se queda bloqueado en un envío se desconecta
+ * (EventSource reconecta solo) para no retener los hilos de envío de los demás
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VideoEventBroadcaster {
+
+  private static final String EVENT_NAME = "update";
+
+  private final ObjectMapper objectMapper;
+
+  private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+  private final AtomicInteger subscribers = new AtomicInteger();
+  private volatile long lastHeartbeat = System.currentTimeMillis();
+  private ExecutorService senders;
+
+  @Value("${video.events.timeout-ms:1800000}")
+  private long timeoutMs;
+
+  @Value("${video.events.max-subscribers:10000}")
+  private int maxSubscribers;
+
+  @Value("${video.events.heartbeat-ms:15000}")
+  private long heartbeatMs;
+
+  @Value("${video.events.send-threads:4}")
+  private int sendThreads;
+
+  @Value("${video.events.max-queued:16}") // Eventos pendientes por espectador antes de desconectarlo
+  private int maxQueued;
+
+  @Value("${video.events.send-timeout-ms:10000}") // Tiempo máximo bloqueado en un envío
+  private long sendTimeoutMs;
+
+  /**
+   * Abrir una conexión SSE para un video
+   */
+  public SseEmitter subscribe(String videoId) {
+    if (subscribers.incrementAndGet() > maxSubscribers) {
+      subscribers.decrementAndGet();
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Demasiadas conexiones en vivo, intenta más tarde");
+    }
+
+    SseEmitter emitter = new SseEmitter(timeoutMs);
+    Subscriber subscriber = new Subscriber(emitter);
+    Channel channel = channels.compute(videoId, (id, existing) -> {
+      Channel target = existing != null ? existing : new Channel();
+      target.subscribers.add(subscriber);
+      return target;
+    });
+
+    Runnable remove = () -> {
+      if (channel.subscribers.remove(subscriber)) {
+        subscribers.decrementAndGet();
+      }
+    };
+    emitter.onCompletion(remove);
+    emitter.onTimeout(remove);
+    emitter.onError(error -> remove.run());
+    return emitter;
+  }
+
+  public void publishComment(String videoId, CommentResponse comment) {
+    Channel channel = channels.get(videoId);
+    if (channel != null) {
+      channel.addComment(comment);
+    }
+  }
+
+  public void publishCounters(String videoId, int likesDelta, int dislikesDelta) {
+    Channel channel = channels.get(videoId);
+    if (channel != null) {
+      channel.addCounters(likesDelta, dislikesDelta);
+    }
+  }
+
+  public void publishProcessing(String videoId, VideoProcessingStatus status, Collection<String> qualities) {
+    Channel channel = channels.get(videoId);
+    if (channel != null) {
+      channel.setProcessing(status, qualities);
+    }
+  }
+
+  /**
+   * Encolar lo acumulado en la ventana para cada espectador; los envíos corren en el pool para que
+   * un cliente lento no retrase a los demás
+   */
+  @Scheduled(fixedDelayString = "${video.events.coalesce-ms:250}")
+  public void flush() {
+    long now = System.currentTimeMillis();
+    boolean heartbeat = now - lastHeartbeat >= heartbeatMs;
+    if (heartbeat) {
+      lastHeartbeat = now;
+    }
+
+    for (Map.Entry<String, Channel> entry : channels.entrySet()) {
+      String videoId = entry.getKey();
+      Channel channel = entry.getValue();
+      LiveUpdate update = channel.drain();
+
+      if (update != null) {
+        String payload;
+        try {
+          payload = objectMapper.writeValueAsString(update);
+        } catch (Exception e) {
+          log.error("Error serializando eventos del video {}: {}", videoId, e.getMessage());
+          continue;
+        }
+        enqueue(channel, SseEmitter.event().name(EVENT_NAME).data(payload, MediaType.APPLICATION_JSON), now);
+      } else if (heartbeat) {
+        enqueue(channel, SseEmitter.event().comment("ping"), now);
+      }
+
+      // Quitar canales sin espectadores ni cambios pendientes
+      channels.computeIfPresent(videoId, (id, current) -> current.isIdle() ? null : current);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    channels.values().forEach(channel -> channel.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+    if (senders != null) {
+      senders.shutdownNow();
+    }
+  }
+
+  private void enqueue(Channel channel, SseEmitter.SseEventBuilder event, long now) {
+    // El evento se arma una sola vez y se reutiliza para todos los espectadores
+    Set<ResponseBodyEmitter.DataWithMediaType> data = event.build();
+    for (Subscriber subscriber : channel.subscribers) {
+      if (subscriber.closed.get()) {
+        continue;
+      }
+      long sendingSince = subscriber.sendingSince;
+      if (sendingSince > 0 && now - sendingSince > sendTimeoutMs) {
+        drop(subscriber, "envío bloqueado");
+        continue;
+      }
+      subscriber.queue.add(data);
+      if (subscriber.queued.incrementAndGet() > maxQueued) {
+        drop(subscriber, "demasiados eventos pendientes");
+        continue;
+      }
+      if (subscriber.draining.compareAndSet(false, true)) {
+        executor().execute(() -> drain(subscriber));
+      }
+    }
+  }
+
+  /**
+   * Enviar en orden los eventos pendientes de un espectador (un solo hilo por espectador a la vez)
+   */
+  private void drain(Subscriber subscriber) {
+    while (true) {
+      Set<ResponseBodyEmitter.DataWithMediaType> data = subscriber.queue.poll();
+      if (data == null) {
+        subscriber.draining.set(false);
+        // Un evento encolado justo después del poll quedaría sin hilo: volver a tomarlo si nadie lo hizo
+        if (subscriber.queue.isEmpty() || !subscriber.draining.compareAndSet(false, true)) {
+          return;
+        }
+        continue;
+      }
+      subscriber.queued.decrementAndGet();
+      subscriber.sendingSince = System.currentTimeMillis();
+      try {
+        subscriber.emitter.send(data);
+      } catch (Exception e) {
+        // Cliente desconectado: completeWithError dispara onError y lo quita del canal
+        if (subscriber.closed.compareAndSet(false, true)) {
+          subscriber.emitter.completeWithError(e);
+        }
+        subscriber.queue.clear();
+      } finally {
+        subscriber.sendingSince = 0;
+      }
+    }
+  }
+
+  private void drop(Subscriber subscriber, String reason) {
+    if (!subscriber.closed.compareAndSet(false, true)) {
+      return;
+    }
+    log.debug("Desconectando espectador SSE lento: {}", reason);
+    subscriber.queue.clear();
+    subscriber.emitter.completeWithError(new IllegalStateException("Espectador SSE lento: " + reason));
+  }
+
+  private synchronized ExecutorService executor() {
+    if (senders == null) {
+      AtomicInteger index = new AtomicInteger();
+      senders = Executors.newFixedThreadPool(Math.max(1, sendThreads), runnable -> {
+        Thread thread = new Thread(runnable, "sse-send-" + index.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return senders;
+  }
+
+  private static class Subscriber {
+    private final SseEmitter emitter;
+    private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile long sendingSince;  // Inicio del envío en curso (0 si no hay ninguno)
+
+    private Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+  }
+
+  private static class Channel {
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private List<CommentResponse> comments = new ArrayList<>();
+    private int likesDelta;
+    private int dislikesDelta;
+    private VideoProcessingStatus processingStatus;
+    private Collection<String> availableQualities;
+    private boolean dirty;
+
+    private synchronized void addComment(CommentResponse comment) {
+      comments.add(comment);
+      dirty = true;
+    }
+
+    private synchronized void addCounters(int likes, int dislikes) {
+      likesDelta += likes;
+      dislikesDelta += dislikes;
+      dirty = true;
+    }
+
+    private synchronized void setProcessing(VideoProcessingStatus status, Collection<String> qualities) {
+      processingStatus = status;
+      availableQualities = qualities != null ? List.copyOf(qualities) : null;
+      dirty = true;
+    }
+
+    /**
+     * Tomar lo acumulado y reiniciar la ventana; null si no hubo cambios
+     */
+    private synchronized LiveUpdate drain() {
+      if (!dirty) {
+        return null;
+      }
+      LiveUpdate update = new LiveUpdate(
+          comments.isEmpty() ? null : comments,
+          likesDelta != 0 ? likesDelta : null,
+          dislikesDelta != 0 ? dislikesDelta : null,
+          processingStatus,
+          availableQualities);
+      comments = new ArrayList<>();
+      likesDelta = 0;
+      dislikesDelta = 0;
+      processingStatus = null;
+      availableQualities = null;
+      dirty = false;
+      return update;
+    }
+
+    private synchronized boolean isIdle() {
+      return subscribers.isEmpty() && !dirty;
+    }
+  }
+}
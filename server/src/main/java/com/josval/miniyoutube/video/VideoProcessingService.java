@@ -5,6 +5,10 @@ import com.josval.miniyoutube.video.enums.VideoProcessingStatus;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -18,8 +22,13 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
@@ -27,11 +36,33 @@ import java.util.UUID;
 public class VideoProcessingService {
 
   private final VideoRepository videoRepository;
+  private final MongoTemplate mongoTemplate;
   private final S3Service s3Service;
+  private final BitrateLadderService bitrateLadderService;
+  private final FeedFanoutService feedFanoutService;
+  private final VideoEventBroadcaster videoEventBroadcaster;
 
   @Value("${video.max.size:524288000}") // 500MB por defecto
   private long maxVideoSize;
 
+  @Value("${video.source.archive.enabled:true}") // Conservar el original en S3 para re-codificaciones
+  private boolean archiveSourceEnabled;
+
+  @Value("${video.storyboard.enabled:true}")
+  private boolean storyboardEnabled;
+
+  @Value("${video.storyboard.interval:5}") // Un frame cada N segundos
+  private int storyboardInterval;
+
+  @Value("${video.storyboard.width:160}")
+  private int storyboardWidth;
+
+  @Value("${video.storyboard.columns:10}")
+  private int storyboardColumns;
+
+  @Value("${video.storyboard.rows:10}")
+  private int storyboardRows;
+
   private static final List<String> ALLOWED_FORMATS = Arrays.asList(
       "video/mp4", "video/x-msvideo", "video/quicktime", "video/webm",
       "application/octet-stream" // Algunos navegadores envían esto para videos
@@ -41,19 +72,31 @@ public class VideoProcessingService {
       "360p", "480p", "720p", "1080p"
   };
 
+  // Videos que se están procesando en este nodo (para no recuperar ni limpiar trabajos vivos)
+  private final Set<String> activeJobs = ConcurrentHashMap.newKeySet();
+
   /**
-   * Procesar todas las calidades de forma incremental (asíncrono)
-   * Cada calidad se procesa, sube a S3 y actualiza la BD inmediatamente
+   * Indica si el video se está procesando actualmente en este nodo
    */
-  @Async
-  public void processAllQualitiesIncremental(String videoId, String tempFilePath) {
+  public boolean isProcessingLocally(String videoId) {
+    return activeJobs.contains(videoId);
+  }
+
+  /**
+   * Fase prioritaria (lane PRIMARY): metadatos, thumbnail, escalera de bitrates, storyboard y la primera calidad
+   * Deja el video reproducible (COMPLETED) lo antes posible; las demás calidades van en otro trabajo
+   * Retorna true si quedan calidades por generar (en ese caso se conserva el archivo subido)
+   */
+  public boolean processFirstRendition(String videoId, String tempFilePath) {
     VideoEntity video = videoRepository.findById(videoId)
         .orElseThrow(() -> new RuntimeException("Video no encontrado"));
 
     File uploadedFile = new File(tempFilePath);
+    activeJobs.add(videoId);
+    Path tempDir = null;
 
     try {
-      log.info("Iniciando procesamiento incremental de video: {}", videoId);
+      log.info("Iniciando procesamiento prioritario de video: {}", videoId);
 
       if (!uploadedFile.exists()) {
         throw new RuntimeException("Archivo temporal no encontrado: " + tempFilePath);
@@ -63,7 +106,7 @@ public class VideoProcessingService {
       validateVideoSize(uploadedFile);
 
       // Crear directorio temporal
-      Path tempDir = Files.createTempDirectory("video-incremental-" + videoId);
+      tempDir = Files.createTempDirectory("video-incremental-" + videoId);
       File hlsOutputDir = tempDir.resolve("hls").toFile();
       hlsOutputDir.mkdirs();
 
@@ -75,64 +118,284 @@ public class VideoProcessingService {
 
       video.setDuration_sec(duration);
       video.setThumbnailUrl(thumbnailUrl);
-      videoRepository.save(video);
+      video.setProcessingUpdatedAt(new Date());
+      saveProcessingState(video);
 
       log.info("Video original: {}x{} ({}p)", originalResolution[0], originalResolution[1], originalResolution[1]);
 
       // 2. Determinar qué calidades generar (solo hasta la resolución original)
-      String[] allQualities = {"360p", "480p", "720p", "1080p"};
-      List<String> qualitiesToProcess = filterQualitiesToProcess(allQualities, originalResolution[1]);
+      List<String> candidateQualities = filterQualitiesToProcess(HLS_QUALITIES, originalResolution[1]);
+
+      // 3. Ajustar bitrates y calidades a la complejidad del contenido (limitado por la escalera fija)
+      Map<String, Integer> ladder = bitrateLadderService.buildLadder(uploadedFile, candidateQualities, duration, tempDir);
+      video.setRenditionBitrates(ladder);
 
-      log.info("Calidades a procesar: {} (de {} posibles)", qualitiesToProcess, allQualities.length);
+      log.info("Calidades a procesar: {} (de {} posibles)", ladder, HLS_QUALITIES.length);
 
+      // El storyboard se genera en la misma pasada de decodificación que la primera calidad
+      File storyboardDir = null;
+      if (storyboardEnabled && duration > 0) {
+        storyboardDir = tempDir.resolve("storyboard").toFile();
+        storyboardDir.mkdirs();
+      }
+
+      // 4. Primera calidad que se genere correctamente (normalmente la menor)
       List<String> availableQualities = new ArrayList<>();
+      for (String quality : ladder.keySet()) {
+        log.info("Procesando calidad {} para video {}", quality, videoId);
 
-      for (String quality : qualitiesToProcess) {
+        if (generateAndUploadQuality(uploadedFile, videoId, hlsPrefix(videoId), quality, ladder.get(quality), hlsOutputDir, storyboardDir, originalResolution)) {
+          availableQualities.add(quality);
+          break;
+        }
+      }
+
+      if (availableQualities.isEmpty()) {
+        throw new RuntimeException("No se pudo generar ninguna calidad");
+      }
+
+      if (storyboardDir != null) {
+        String storyboardUrl = uploadStoryboard(storyboardDir, videoId, duration, originalResolution);
+        if (storyboardUrl != null) {
+          video.setStoryboardUrl(storyboardUrl);
+        }
+      }
+
+      String manifestUrl = createAndUploadMasterPlaylist(availableQualities, ladder, hlsPrefix(videoId), hlsOutputDir, originalResolution);
+      boolean firstPublish = video.getProcessingStatus() != VideoProcessingStatus.COMPLETED; // Las re-codificaciones no se redistribuyen
+      video.setAvailableQualities(new ArrayList<>(availableQualities));
+      video.setVideoUrl(manifestUrl);
+      video.setHlsManifestUrl(manifestUrl);
+      video.setProcessingStatus(VideoProcessingStatus.COMPLETED);
+      video.setProcessingUpdatedAt(new Date());
+      saveProcessingState(video);
+
+      if (firstPublish) {
+        feedFanoutService.onVideoPublished(video);
+      }
+
+      log.info("Calidad {} lista, video {} reproducible", availableQualities.get(0), videoId);
+
+      // Archivar antes de encolar las calidades restantes: si este nodo cae, otro las toma desde S3
+      archiveSource(video, uploadedFile);
+      boolean remaining = hasPendingQualities(video);
+      if (!remaining) {
+        Files.deleteIfExists(uploadedFile.toPath());
+      }
+      return remaining;
+
+    } catch (Exception e) {
+      log.error("Error en procesamiento prioritario de video {}: {}", videoId, e.getMessage(), e);
+      video.setProcessingStatus(VideoProcessingStatus.FAILED);
+      video.setProcessingUpdatedAt(new Date());
+      saveProcessingState(video);
+
+      try {
+        Files.deleteIfExists(uploadedFile.toPath());
+      } catch (IOException ex) {
+        log.warn("No se pudo eliminar archivo temporal: {}", uploadedFile.getPath());
+      }
+      return false;
+    } finally {
+      if (tempDir != null) {
+        deleteDirectory(tempDir.toFile());
+      }
+      activeJobs.remove(videoId);
+    }
+  }
+
+  /**
+   * Fase secundaria (lane REMAINING): generar las calidades de la escalera que aún no están disponibles
+   * El video ya es reproducible, así que un error aquí no lo marca como FAILED
+   */
+  public void processRemainingRenditions(String videoId, String tempFilePath) {
+    VideoEntity video = videoRepository.findById(videoId)
+        .orElseThrow(() -> new RuntimeException("Video no encontrado"));
+
+    File uploadedFile = new File(tempFilePath);
+    activeJobs.add(videoId);
+    Path tempDir = null;
+
+    try {
+      if (!uploadedFile.exists()) {
+        throw new RuntimeException("Archivo temporal no encontrado: " + tempFilePath);
+      }
+
+      tempDir = Files.createTempDirectory("video-incremental-" + videoId);
+      File hlsOutputDir = tempDir.resolve("hls").toFile();
+      hlsOutputDir.mkdirs();
+
+      int[] originalResolution = getVideoResolution(uploadedFile);
+      Map<String, Integer> ladder = video.getRenditionBitrates();
+      List<String> availableQualities = video.getAvailableQualities() != null
+          ? new ArrayList<>(video.getAvailableQualities())
+          : new ArrayList<>();
+
+      for (String quality : ladder.keySet()) {
+        if (availableQualities.contains(quality)) {
+          continue;
+        }
         log.info("Procesando calidad {} para video {}", quality, videoId);
 
-        if (generateAndUploadQuality(uploadedFile, videoId, quality, hlsOutputDir)) {
+        if (generateAndUploadQuality(uploadedFile, videoId, hlsPrefix(videoId), quality, ladder.get(quality), hlsOutputDir, null, originalResolution)) {
           availableQualities.add(quality);
+          availableQualities.sort((a, b) -> Integer.compare(
+              Integer.parseInt(a.replace("p", "")), Integer.parseInt(b.replace("p", ""))));
 
           // Actualizar BD inmediatamente con la nueva calidad disponible
+          String manifestUrl = createAndUploadMasterPlaylist(availableQualities, ladder, hlsPrefix(videoId), hlsOutputDir, originalResolution);
           video.setAvailableQualities(new ArrayList<>(availableQualities));
-
-          // Crear/actualizar master.m3u8 con las calidades disponibles hasta ahora
-          String manifestUrl = createAndUploadMasterPlaylist(availableQualities, videoId, hlsOutputDir, originalResolution);
           video.setVideoUrl(manifestUrl);
           video.setHlsManifestUrl(manifestUrl);
+          video.setProcessingUpdatedAt(new Date());
+          saveProcessingState(video);
+          log.info("Calidad {} lista y disponible. Total: {}/{}", quality, availableQualities.size(), ladder.size());
+        }
+      }
 
-          // Si es la primera calidad, marcar como COMPLETED
-          if (availableQualities.size() == 1) {
-            video.setProcessingStatus(VideoProcessingStatus.COMPLETED);
-          }
+      archiveSource(video, uploadedFile);
+      log.info("Procesamiento completo de video {}: {} calidades disponibles", videoId, availableQualities.size());
+
+    } catch (Exception e) {
+      log.error("Error generando calidades restantes de video {}: {}", videoId, e.getMessage(), e);
+    } finally {
+      if (tempDir != null) {
+        deleteDirectory(tempDir.toFile());
+      }
+      try {
+        Files.deleteIfExists(uploadedFile.toPath());
+      } catch (IOException ex) {
+        log.warn("No se pudo eliminar archivo temporal: {}", uploadedFile.getPath());
+      }
+      activeJobs.remove(videoId);
+    }
+  }
+
+  /**
+   * Re-codificación (lane BACKFILL): regenerar toda la escalera desde el original archivado
+   * Las calidades nuevas se suben a una carpeta propia y el manifiesto se cambia al final, así el video
+   * sigue sirviendo las calidades anteriores mientras tanto y las conserva si la re-codificación falla
+   * Nunca marca el video como FAILED
+   */
+  public void reencodeRenditions(String videoId, String tempFilePath) {
+    VideoEntity video = videoRepository.findById(videoId)
+        .orElseThrow(() -> new RuntimeException("Video no encontrado"));
 
-          videoRepository.save(video);
-          log.info("Calidad {} lista y disponible. Total: {}/{}", quality, availableQualities.size(), qualitiesToProcess.size());
+    File uploadedFile = new File(tempFilePath);
+    activeJobs.add(videoId);
+    Path tempDir = null;
+
+    try {
+      if (!uploadedFile.exists()) {
+        throw new RuntimeException("Archivo temporal no encontrado: " + tempFilePath);
+      }
+
+      tempDir = Files.createTempDirectory("video-reencode-" + videoId);
+      File hlsOutputDir = tempDir.resolve("hls").toFile();
+      hlsOutputDir.mkdirs();
+
+      int duration = getVideoDuration(uploadedFile);
+      int[] originalResolution = getVideoResolution(uploadedFile);
+      List<String> candidateQualities = filterQualitiesToProcess(HLS_QUALITIES, originalResolution[1]);
+      Map<String, Integer> ladder = bitrateLadderService.buildLadder(uploadedFile, candidateQualities, duration, tempDir);
+
+      // Carpeta nueva por re-codificación: no se pisan los segmentos que los reproductores están leyendo
+      // Se marca antes de subir nada para que la recuperación limpie también una carpeta a medias
+      String folderPrefix = hlsPrefix(videoId) + "/r" + System.currentTimeMillis();
+      markRenditionsSuperseded(videoId);
+      List<String> availableQualities = new ArrayList<>();
+      for (String quality : ladder.keySet()) {
+        log.info("Re-codificando calidad {} para video {}", quality, videoId);
+        if (generateAndUploadQuality(uploadedFile, videoId, folderPrefix, quality, ladder.get(quality), hlsOutputDir, null, originalResolution)) {
+          availableQualities.add(quality);
         }
       }
 
-      // Limpiar archivos temporales
-      deleteDirectory(tempDir.toFile());
-      Files.deleteIfExists(uploadedFile.toPath());
+      if (availableQualities.isEmpty()) {
+        log.error("Re-codificación de video {} sin calidades generadas, se conservan las anteriores", videoId);
+        return;
+      }
 
-      log.info("Procesamiento completo de video {}: {} calidades disponibles", videoId, availableQualities.size());
+      String manifestUrl = createAndUploadMasterPlaylist(availableQualities, ladder, folderPrefix, hlsOutputDir, originalResolution);
+      video.setRenditionBitrates(ladder);
+      video.setAvailableQualities(new ArrayList<>(availableQualities));
+      video.setVideoUrl(manifestUrl);
+      video.setHlsManifestUrl(manifestUrl);
+      video.setProcessingUpdatedAt(new Date());
+      saveProcessingState(video);
+      // El período de gracia de las carpetas anteriores cuenta desde el cambio de manifiesto
+      markRenditionsSuperseded(videoId);
+      log.info("Re-codificación completa de video {}: {} calidades disponibles", videoId, availableQualities.size());
 
     } catch (Exception e) {
-      log.error("Error en procesamiento incremental de video {}: {}", videoId, e.getMessage(), e);
-      video.setProcessingStatus(VideoProcessingStatus.FAILED);
-      videoRepository.save(video);
-
+      log.error("Error re-codificando video {}, se conservan las calidades anteriores: {}", videoId, e.getMessage(), e);
+    } finally {
+      if (tempDir != null) {
+        deleteDirectory(tempDir.toFile());
+      }
       try {
         Files.deleteIfExists(uploadedFile.toPath());
       } catch (IOException ex) {
         log.warn("No se pudo eliminar archivo temporal: {}", uploadedFile.getPath());
       }
+      activeJobs.remove(videoId);
+    }
+  }
+
+  /**
+   * Descargar el original archivado para re-codificarlo (lane BACKFILL)
+   * Retorna la ruta del archivo temporal descargado
+   */
+  public String downloadSource(String videoId) throws IOException {
+    VideoEntity video = videoRepository.findById(videoId)
+        .orElseThrow(() -> new RuntimeException("Video no encontrado"));
+
+    if (video.getOriginalVideoUrl() == null) {
+      throw new RuntimeException("El video no tiene un original archivado");
+    }
+
+    String url = video.getOriginalVideoUrl();
+    String extension = url.contains(".") ? url.substring(url.lastIndexOf('.')) : "";
+    Path target = Files.createTempFile("upload-" + videoId + "-", extension);
+    Files.delete(target); // El SDK de S3 no sobrescribe archivos existentes
+    s3Service.downloadFile(url, target);
+    return target.toString();
+  }
+
+  private void markRenditionsSuperseded(String videoId) {
+    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(videoId)),
+        new Update().set("renditionsSupersededAt", new Date()), VideoEntity.class);
+  }
+
+  private String hlsPrefix(String videoId) {
+    return "videos/" + videoId + "/hls";
+  }
+
+  private boolean hasPendingQualities(VideoEntity video) {
+    Collection<String> available = video.getAvailableQualities();
+    return video.getRenditionBitrates().keySet().stream()
+        .anyMatch(quality -> available == null || !available.contains(quality));
+  }
+
+  /**
+   * Guardar el archivo subido en S3 para poder re-codificarlo después (solo la primera vez)
+   */
+  private void archiveSource(VideoEntity video, File uploadedFile) {
+    if (!archiveSourceEnabled || video.getOriginalVideoUrl() != null) {
+      return;
+    }
+    try {
+      String url = s3Service.uploadFile(uploadedFile, "videos/" + video.getId() + "/source", "application/octet-stream");
+      video.setOriginalVideoUrl(url);
+      saveProcessingState(video);
+    } catch (Exception e) {
+      log.warn("No se pudo archivar el original de video {}: {}", video.getId(), e.getMessage());
     }
   }
 
   /**
    * Generar 360p HLS + thumbnail de forma síncrona (para visualización inmediata)
-   * DEPRECATED - Ya no se usa, ahora usamos processAllQualitiesIncremental
+   * DEPRECATED - Ya no se usa, ahora usamos processFirstRendition
    */
   @Deprecated
   public java.util.Map<String, String> generateLowQualityHLSSync(File videoFile, String videoId) throws IOException, InterruptedException {
@@ -245,7 +508,7 @@ public class VideoProcessingService {
       // Actualizar con master.m3u8 (ahora tiene todas las calidades)
       video.setHlsManifestUrl(masterManifestUrl);
       video.setVideoUrl(masterManifestUrl); // Ahora usar master.m3u8 con todas las calidades
-      videoRepository.save(video);
+      saveProcessingState(video);
 
       // Limpiar archivos temporales
       deleteDirectory(tempDir.toFile());
@@ -275,21 +538,22 @@ public class VideoProcessingService {
 
   /**
    * Generar una calidad específica y subirla a S3
+   * Si se indica storyboardDir, en la misma pasada se generan las hojas de sprites del storyboard
    * Retorna true si se generó exitosamente, false si falló
    */
-  private boolean generateAndUploadQuality(File videoFile, String videoId, String quality, File hlsOutputDir) {
+  private boolean generateAndUploadQuality(File videoFile, String videoId, String folderPrefix, String quality,
+                                           int videoBitrate, File hlsOutputDir, File storyboardDir, int[] originalResolution) {
     try {
       String outputName = "playlist_" + quality;
       File outputPlaylist = new File(hlsOutputDir, outputName + ".m3u8");
 
       int targetHeight = Integer.parseInt(quality.replace("p", ""));
-      int videoBitrate = getVideoBitrate(quality);
 
       // Usar scale con -2 para mantener aspect ratio automáticamente
       // -2 hace que ffmpeg calcule el width automáticamente y sea divisible por 2
       String scaleFilter = "scale=-2:" + targetHeight;
 
-      ProcessBuilder processBuilder = new ProcessBuilder(
+      List<String> command = new ArrayList<>(Arrays.asList(
           "ffmpeg",
           "-i", videoFile.getAbsolutePath(),
           "-vf", scaleFilter,  // Mantiene aspect ratio original
@@ -301,7 +565,24 @@ public class VideoProcessingService {
           "-hls_playlist_type", "vod",
           "-hls_segment_filename", new File(hlsOutputDir, outputName + "_%03d.ts").getAbsolutePath(),
           outputPlaylist.getAbsolutePath()
-      );
+      ));
+
+      if (storyboardDir != null) {
+        // Segunda salida del mismo ffmpeg: un frame cada N segundos, escalado y agrupado en mosaicos
+        int[] tileSize = getStoryboardTileSize(originalResolution);
+        command.addAll(Arrays.asList(
+            "-map", "0:v:0",
+            "-an",
+            "-vf", "fps=1/" + storyboardInterval
+                + ",scale=" + tileSize[0] + ":" + tileSize[1]
+                + ",tile=" + storyboardColumns + "x" + storyboardRows,
+            "-q:v", "5",
+            "-f", "image2",
+            new File(storyboardDir, "storyboard_%03d.jpg").getAbsolutePath()
+        ));
+      }
+
+      ProcessBuilder processBuilder = new ProcessBuilder(command);
 
       processBuilder.redirectErrorStream(true);
       Process process = processBuilder.start();
@@ -315,12 +596,18 @@ public class VideoProcessingService {
       int exitCode = process.waitFor();
 
       if (exitCode != 0) {
+        if (storyboardDir != null) {
+          // No perder la calidad por un fallo del storyboard: reintentar solo la calidad
+          log.warn("Error generando calidad {} con storyboard para video {}. Reintentando sin storyboard", quality, videoId);
+          deleteDirectory(storyboardDir);
+          return generateAndUploadQuality(videoFile, videoId, folderPrefix, quality, videoBitrate, hlsOutputDir, null, originalResolution);
+        }
         log.error("Error generando calidad {} para video {}. Exit code: {}", quality, videoId, exitCode);
         return false;
       }
 
       // Subir archivos a S3
-      uploadQualityFiles(hlsOutputDir, videoId, outputName);
+      uploadQualityFiles(hlsOutputDir, folderPrefix, outputName);
 
       log.info("Calidad {} generada y subida a S3 exitosamente", quality);
       return true;
@@ -332,11 +619,80 @@ public class VideoProcessingService {
   }
 
   /**
-   * Subir archivos de una calidad específica a S3
+   * Subir las hojas de sprites del storyboard y su índice WebVTT a S3
+   * Retorna la URL del archivo .vtt, o null si no se generaron hojas
    */
-  private void uploadQualityFiles(File hlsDir, String videoId, String playlistName) throws IOException {
-    String folderPrefix = "videos/" + videoId + "/hls";
+  private String uploadStoryboard(File storyboardDir, String videoId, int duration, int[] originalResolution) {
+    try {
+      File[] sheets = storyboardDir.listFiles((dir, name) -> name.startsWith("storyboard_") && name.endsWith(".jpg"));
+      if (sheets == null || sheets.length == 0) {
+        log.warn("No se generaron hojas de storyboard para video {}", videoId);
+        return null;
+      }
+      Arrays.sort(sheets);
+
+      int[] tileSize = getStoryboardTileSize(originalResolution);
+      int tilesPerSheet = storyboardColumns * storyboardRows;
+      int frames = Math.min((duration + storyboardInterval - 1) / storyboardInterval, sheets.length * tilesPerSheet);
+
+      StringBuilder vtt = new StringBuilder("WEBVTT\n\n");
+      for (int i = 0; i < frames; i++) {
+        int start = i * storyboardInterval;
+        int end = Math.min(start + storyboardInterval, duration);
+        int tile = i % tilesPerSheet;
+        int x = (tile % storyboardColumns) * tileSize[0];
+        int y = (tile / storyboardColumns) * tileSize[1];
+
+        vtt.append(formatVttTimestamp(start))
+            .append(" --> ")
+            .append(formatVttTimestamp(end))
+            .append("\n")
+            .append(sheets[i / tilesPerSheet].getName())
+            .append("#xywh=")
+            .append(x).append(",").append(y).append(",")
+            .append(tileSize[0]).append(",").append(tileSize[1])
+            .append("\n\n");
+      }
+
+      File vttFile = new File(storyboardDir, "storyboard.vtt");
+      Files.write(vttFile.toPath(), vtt.toString().getBytes());
+
+      String folderPrefix = "videos/" + videoId + "/storyboard";
+      for (File sheet : sheets) {
+        s3Service.uploadFile(sheet, folderPrefix, "image/jpeg");
+      }
+      String url = s3Service.uploadFile(vttFile, folderPrefix, "text/vtt");
+
+      log.info("Storyboard de video {} subido: {} hojas, {} frames", videoId, sheets.length, frames);
+      return url;
+    } catch (Exception e) {
+      log.warn("No se pudo subir el storyboard de video {}: {}", videoId, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Tamaño de cada miniatura del storyboard manteniendo el aspect ratio original (alto par)
+   */
+  private int[] getStoryboardTileSize(int[] originalResolution) {
+    int height = (int) Math.round((double) storyboardWidth * originalResolution[1] / originalResolution[0]);
+    if (height % 2 != 0) {
+      height++;
+    }
+    return new int[]{storyboardWidth, Math.max(height, 2)};
+  }
+
+  private String formatVttTimestamp(int totalSeconds) {
+    int hours = totalSeconds / 3600;
+    int minutes = (totalSeconds % 3600) / 60;
+    int seconds = totalSeconds % 60;
+    return String.format("%02d:%02d:%02d.000", hours, minutes, seconds);
+  }
 
+  /**
+   * Subir archivos de una calidad específica a S3
+   */
+  private void uploadQualityFiles(File hlsDir, String folderPrefix, String playlistName) throws IOException {
     for (File file : hlsDir.listFiles()) {
       if (file.isFile() && file.getName().startsWith(playlistName)) {
         String contentType = file.getName().endsWith(".m3u8") ? "application/vnd.apple.mpegurl" : "video/MP2T";
@@ -347,9 +703,10 @@ public class VideoProcessingService {
 
   /**
    * Crear y subir master.m3u8 con las calidades disponibles
-   * Calcula resoluciones manteniendo el aspect ratio original
+   * Calcula resoluciones manteniendo el aspect ratio original y anuncia el bitrate elegido para cada calidad
    */
-  private String createAndUploadMasterPlaylist(List<String> availableQualities, String videoId, File hlsOutputDir, int[] originalResolution) throws IOException {
+  private String createAndUploadMasterPlaylist(List<String> availableQualities, Map<String, Integer> ladder, String folderPrefix,
+                                               File hlsOutputDir, int[] originalResolution) throws IOException {
     File masterFile = new File(hlsOutputDir, "master.m3u8");
 
     StringBuilder content = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n");
@@ -369,7 +726,7 @@ public class VideoProcessingService {
         targetWidth++;
       }
 
-      int bandwidth = getVideoBitrate(quality) * 1000 + 128000;
+      int bandwidth = ladder.getOrDefault(quality, getVideoBitrate(quality)) * 1000 + 128000;
 
       content.append("#EXT-X-STREAM-INF:BANDWIDTH=")
           .append(bandwidth)
@@ -385,7 +742,6 @@ public class VideoProcessingService {
     Files.write(masterFile.toPath(), content.toString().getBytes());
 
     // Subir master.m3u8 a S3
-    String folderPrefix = "videos/" + videoId + "/hls";
     String url = s3Service.uploadFile(masterFile, folderPrefix, "application/vnd.apple.mpegurl");
 
     return url;
@@ -720,13 +1076,7 @@ public class VideoProcessingService {
   }
 
   private int getVideoBitrate(String quality) {
-    switch (quality) {
-      case "360p": return 800;
-      case "480p": return 1400;
-      case "720p": return 2800;
-      case "1080p": return 5000;
-      default: return 800;
-    }
+    return bitrateLadderService.getDefaultBitrate(quality);
   }
 
   private String getFileExtension(String filename) {
@@ -750,4 +1100,24 @@ public class VideoProcessingService {
       directory.delete();
     }
   }
+
+  /**
+   * Persistir solo los campos que escribe el procesamiento
+   * Un save() del documento completo pisaría los contadores ($inc) cambiados mientras se transcodifica
+   */
+  private void saveProcessingState(VideoEntity video) {
+    Update update = new Update()
+        .set("videoUrl", video.getVideoUrl())
+        .set("thumbnailUrl", video.getThumbnailUrl())
+        .set("duration_sec", video.getDuration_sec())
+        .set("processingStatus", video.getProcessingStatus())
+        .set("hlsManifestUrl", video.getHlsManifestUrl())
+        .set("originalVideoUrl", video.getOriginalVideoUrl())
+        .set("availableQualities", video.getAvailableQualities())
+        .set("renditionBitrates", video.getRenditionBitrates())
+        .set("storyboardUrl", video.getStoryboardUrl())
+        .set("processingUpdatedAt", video.getProcessingUpdatedAt());
+    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(video.getId())), update, VideoEntity.class);
+    videoEventBroadcaster.publishProcessing(video.getId(), video.getProcessingStatus(), video.getAvailableQualities());
+  }
 }
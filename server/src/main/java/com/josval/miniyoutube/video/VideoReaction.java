@@ -1,11 +1,13 @@
 package com.josval.miniyoutube.video;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.josval.miniyoutube.user.UserEntity;
 import com.josval.miniyoutube.video.enums.ReactionType;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -21,11 +23,33 @@ public class VideoReaction {
   @MongoId
   private String id;
 
-  @DBRef
+  @JsonIgnore
+  @DBRef(lazy = true)
   private VideoEntity video;
 
-  @DBRef
+  @JsonIgnore
+  @DBRef(lazy = true)
   private UserEntity user;
 
   private ReactionType type; // LIKE o DISLIKE
+
+  /**
+   * ID del video sin resolver la referencia lazy
+   */
+  public String getVideoId() {
+    if (video instanceof LazyLoadingProxy proxy) {
+      return proxy.toDBRef().getId().toString();
+    }
+    return video != null ? video.getId() : null;
+  }
+
+  /**
+   * ID del usuario sin resolver la referencia lazy
+   */
+  public String getUserId() {
+    if (user instanceof LazyLoadingProxy proxy) {
+      return proxy.toDBRef().getId().toString();
+    }
+    return user != null ? user.getId() : null;
+  }
 }
@@ -0,0 +1,376 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.service.S3Service;
+import com.josval.miniyoutube.video.enums.TranscodingLane;
+import com.josval.miniyoutube.video.enums.VideoProcessingStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Recuperación de videos colgados en PROCESSING y limpieza de artefactos huérfanos
+ * Se ejecuta al arrancar y periódicamente; cada acción se reporta como métrica
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VideoRecoveryService {
+
+  private static final String UPLOAD_PREFIX = "upload-";
+  private static final String[] WORK_DIR_PREFIXES = {
+      "video-incremental-", "video-quick-", "video-processing-", "video-reencode-"
+  };
+  private static final int OBJECT_ID_LENGTH = 24;
+  private static final String VIDEOS_PREFIX = "videos/";
+  private static final Pattern RENDITION_FOLDER = Pattern.compile("r\\d+/");
+
+  private final MongoTemplate mongoTemplate;
+  private final VideoProcessingService videoProcessingService;
+  private final TranscodingQueueService transcodingQueueService;
+  private final S3Service s3Service;
+  private final MeterRegistry meterRegistry;
+
+  @Value("${video.recovery.stale-after-minutes:30}")
+  private long staleAfterMinutes;
+
+  @Value("${video.recovery.max-attempts:2}")
+  private int maxAttempts;
+
+  @Value("${video.recovery.temp-max-age-minutes:120}")
+  private long tempMaxAgeMinutes;
+
+  @Value("${video.recovery.s3.delete-orphans:false}")
+  private boolean deleteOrphanPrefixes;
+
+  // Mayor que la vida de un manifiesto en los reproductores (y en las respuestas cacheadas de la API)
+  @Value("${video.recovery.rendition-grace-hours:48}")
+  private long renditionGraceHours;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void recoverOnStartup() {
+    log.info("Ejecutando recuperación de videos al iniciar");
+    recover();
+  }
+
+  @Scheduled(
+      fixedDelayString = "${video.recovery.interval-ms:600000}",
+      initialDelayString = "${video.recovery.interval-ms:600000}")
+  public void recoverPeriodically() {
+    recover();
+  }
+
+  /**
+   * Recuperar trabajos colgados, limpiar temporales y detectar prefijos S3 huérfanos
+   */
+  public synchronized void recover() {
+    Set<String> requeued = new HashSet<>();
+
+    try {
+      recoverStaleJobs();
+    } catch (Exception e) {
+      log.error("Error recuperando trabajos de transcodificación: {}", e.getMessage(), e);
+    }
+
+    try {
+      transcodingQueueService.reconcileSlots();
+    } catch (Exception e) {
+      log.error("Error reconciliando lugares de la cola de transcodificación: {}", e.getMessage(), e);
+    }
+
+    try {
+      requeued.addAll(recoverStaleVideos());
+    } catch (Exception e) {
+      log.error("Error recuperando videos colgados: {}", e.getMessage(), e);
+    }
+
+    try {
+      sweepTempArtifacts(requeued);
+    } catch (Exception e) {
+      log.error("Error limpiando archivos temporales: {}", e.getMessage(), e);
+    }
+
+    try {
+      sweepOrphanPrefixes();
+    } catch (Exception e) {
+      log.error("Error buscando prefijos huérfanos en S3: {}", e.getMessage(), e);
+    }
+
+    try {
+      sweepSupersededRenditions();
+    } catch (Exception e) {
+      log.error("Error eliminando calidades HLS reemplazadas: {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Devolver a la cola los trabajos cuyo worker dejó de enviar heartbeat
+   */
+  private void recoverStaleJobs() {
+    Date cutoff = new Date(System.currentTimeMillis() - staleAfterMinutes * 60_000);
+    long requeued = transcodingQueueService.requeueStale(cutoff);
+    if (requeued > 0) {
+      log.warn("Re-encolados {} trabajos de transcodificación sin heartbeat", requeued);
+      meterRegistry.counter("video.recovery.jobs", "action", "job_requeued").increment(requeued);
+    }
+  }
+
+  /**
+   * Re-encolar (si aún existe el archivo subido) o marcar como FAILED los videos sin avance reciente
+   * Retorna los IDs re-encolados
+   */
+  private Set<String> recoverStaleVideos() {
+    Date cutoff = new Date(System.currentTimeMillis() - staleAfterMinutes * 60_000);
+
+    Query query = new Query().addCriteria(new Criteria().andOperator(
+        Criteria.where("processingStatus").in(VideoProcessingStatus.PENDING, VideoProcessingStatus.PROCESSING),
+        new Criteria().orOperator(
+            Criteria.where("processingUpdatedAt").lt(cutoff),
+            new Criteria().andOperator(
+                Criteria.where("processingUpdatedAt").exists(false),
+                Criteria.where("createdAt").lt(cutoff)
+            )
+        )
+    ));
+    query.fields().include("_id", "creator", "creatorSummary", "processingAttempts");
+
+    List<VideoEntity> staleVideos = mongoTemplate.find(query, VideoEntity.class);
+    Set<String> requeued = new HashSet<>();
+
+    for (VideoEntity stale : staleVideos) {
+      String videoId = stale.getId();
+      // Los videos con trabajo en cola solo esperan turno, no están colgados
+      if (videoProcessingService.isProcessingLocally(videoId) || transcodingQueueService.hasJob(videoId)) {
+        continue;
+      }
+
+      File uploadedFile = findUploadFile(videoId);
+      int attempts = stale.getProcessingAttempts() != null ? stale.getProcessingAttempts() : 0;
+
+      if (uploadedFile != null && attempts < maxAttempts) {
+        mongoTemplate.updateFirst(
+            Query.query(Criteria.where("_id").is(videoId)),
+            new Update()
+                .set("processingStatus", VideoProcessingStatus.PROCESSING)
+                .set("processingUpdatedAt", new Date())
+                .inc("processingAttempts", 1),
+            VideoEntity.class);
+
+        log.warn("Re-encolando video colgado {} (intento {})", videoId, attempts + 1);
+        String creatorId = stale.getCreatorId();
+        transcodingQueueService.enqueue(videoId, creatorId, uploadedFile.getAbsolutePath(), TranscodingLane.PRIMARY);
+        requeued.add(videoId);
+        meterRegistry.counter("video.recovery.jobs", "action", "requeued").increment();
+      } else {
+        mongoTemplate.updateFirst(
+            Query.query(Criteria.where("_id").is(videoId)),
+            new Update()
+                .set("processingStatus", VideoProcessingStatus.FAILED)
+                .set("processingUpdatedAt", new Date()),
+            VideoEntity.class);
+
+        log.warn("Marcando como FAILED video colgado {} (archivo disponible: {}, intentos: {})",
+            videoId, uploadedFile != null, attempts);
+        meterRegistry.counter("video.recovery.jobs", "action", "failed").increment();
+      }
+    }
+
+    return requeued;
+  }
+
+  /**
+   * Eliminar archivos upload-* y directorios de trabajo antiguos que no pertenecen a un trabajo vivo
+   */
+  private void sweepTempArtifacts(Set<String> protectedIds) {
+    File tempRoot = new File(System.getProperty("java.io.tmpdir"));
+    File[] entries = tempRoot.listFiles();
+    if (entries == null) {
+      return;
+    }
+
+    long cutoff = System.currentTimeMillis() - tempMaxAgeMinutes * 60_000;
+
+    for (File entry : entries) {
+      String videoId = extractVideoId(entry);
+      if (videoId == null || entry.lastModified() >= cutoff) {
+        continue;
+      }
+      if (protectedIds.contains(videoId) || videoProcessingService.isProcessingLocally(videoId)
+          || transcodingQueueService.hasJob(videoId)) {
+        continue;
+      }
+
+      long bytes = sizeOf(entry);
+      String type = entry.isDirectory() ? "directory" : "file";
+      if (deleteRecursively(entry)) {
+        log.info("Temporal huérfano eliminado: {} ({} bytes)", entry.getName(), bytes);
+        meterRegistry.counter("video.recovery.temp.deleted", "type", type).increment();
+        meterRegistry.counter("video.recovery.temp.bytes").increment(bytes);
+      }
+    }
+  }
+
+  /**
+   * Detectar prefijos videos/{id}/ en S3 sin VideoEntity asociado (y eliminarlos si está habilitado)
+   */
+  private void sweepOrphanPrefixes() {
+    List<String> prefixes = s3Service.listPrefixes(VIDEOS_PREFIX);
+    if (prefixes.isEmpty()) {
+      return;
+    }
+
+    Set<String> prefixIds = prefixes.stream()
+        .map(prefix -> prefix.substring(VIDEOS_PREFIX.length(), prefix.length() - 1))
+        .collect(Collectors.toSet());
+
+    Query query = Query.query(Criteria.where("_id").in(prefixIds));
+    query.fields().include("_id");
+    Set<String> existing = mongoTemplate.find(query, VideoEntity.class).stream()
+        .map(VideoEntity::getId)
+        .collect(Collectors.toSet());
+
+    for (String videoId : prefixIds) {
+      if (existing.contains(videoId)) {
+        continue;
+      }
+
+      meterRegistry.counter("video.recovery.s3.orphans", "action", "found").increment();
+
+      if (deleteOrphanPrefixes) {
+        int deleted = s3Service.deletePrefix(VIDEOS_PREFIX + videoId + "/");
+        log.warn("Prefijo S3 huérfano eliminado: {}{}/ ({} objetos)", VIDEOS_PREFIX, videoId, deleted);
+        meterRegistry.counter("video.recovery.s3.orphans", "action", "deleted").increment();
+      } else {
+        log.warn("Prefijo S3 huérfano detectado: {}{}/", VIDEOS_PREFIX, videoId);
+      }
+    }
+  }
+
+  /**
+   * Eliminar las carpetas HLS que una re-codificación dejó sin usar (la escalera anterior, o una
+   * carpeta r{timestamp} a medias si falló) una vez pasado el período de gracia
+   */
+  private void sweepSupersededRenditions() {
+    Date cutoff = new Date(System.currentTimeMillis() - renditionGraceHours * 3_600_000);
+    Query query = Query.query(Criteria.where("renditionsSupersededAt").lt(cutoff));
+    query.fields().include("_id", "hlsManifestUrl", "renditionsSupersededAt");
+
+    for (VideoEntity video : mongoTemplate.find(query, VideoEntity.class)) {
+      String videoId = video.getId();
+      // Una re-codificación en curso todavía está subiendo su carpeta
+      if (videoProcessingService.isProcessingLocally(videoId) || transcodingQueueService.hasJob(videoId)) {
+        continue;
+      }
+
+      String hlsRoot = VIDEOS_PREFIX + videoId + "/hls/";
+      String currentFolder = currentRenditionFolder(video.getHlsManifestUrl(), hlsRoot);
+      for (String prefix : s3Service.listPrefixes(hlsRoot)) {
+        String folder = prefix.substring(hlsRoot.length());
+        // Con el manifiesto en la raíz solo sobran las carpetas r{timestamp}; con el manifiesto
+        // en una de ellas sobra todo lo demás (incluida la escalera original)
+        boolean superseded = currentFolder == null
+            ? RENDITION_FOLDER.matcher(folder).matches()
+            : !folder.equals(currentFolder);
+        if (superseded) {
+          int deleted = s3Service.deletePrefix(prefix);
+          log.info("Calidades HLS reemplazadas eliminadas: {} ({} objetos)", prefix, deleted);
+          meterRegistry.counter("video.recovery.s3.renditions", "action", "deleted").increment();
+        }
+      }
+
+      // Solo si nadie volvió a re-codificar mientras tanto
+      mongoTemplate.updateFirst(
+          Query.query(Criteria.where("_id").is(videoId).and("renditionsSupersededAt").is(video.getRenditionsSupersededAt())),
+          new Update().unset("renditionsSupersededAt"),
+          VideoEntity.class);
+    }
+  }
+
+  /**
+   * Carpeta r{timestamp}/ del manifiesto actual, o null si el manifiesto está en la raíz de hls/
+   */
+  private String currentRenditionFolder(String manifestUrl, String hlsRoot) {
+    int start = manifestUrl != null ? manifestUrl.indexOf(hlsRoot) : -1;
+    if (start < 0) {
+      return null;
+    }
+    String path = manifestUrl.substring(start + hlsRoot.length());
+    int slash = path.indexOf('/');
+    return slash > 0 ? path.substring(0, slash + 1) : null;
+  }
+
+  private File findUploadFile(String videoId) {
+    File tempRoot = new File(System.getProperty("java.io.tmpdir"));
+    File[] matches = tempRoot.listFiles((dir, name) -> name.startsWith(UPLOAD_PREFIX + videoId + "-"));
+    return matches != null && matches.length > 0 ? matches[0] : null;
+  }
+
+  /**
+   * Extraer el ID del video a partir del nombre de un temporal, o null si no es un artefacto de video
+   * upload-{id}-{random}.ext | video-incremental-{id}{random}
+   */
+  private String extractVideoId(File entry) {
+    String name = entry.getName();
+
+    if (entry.isFile() && name.startsWith(UPLOAD_PREFIX)) {
+      int end = name.indexOf('-', UPLOAD_PREFIX.length());
+      return end > UPLOAD_PREFIX.length() ? name.substring(UPLOAD_PREFIX.length(), end) : null;
+    }
+
+    if (entry.isDirectory()) {
+      for (String prefix : WORK_DIR_PREFIXES) {
+        if (name.startsWith(prefix) && name.length() >= prefix.length() + OBJECT_ID_LENGTH) {
+          return name.substring(prefix.length(), prefix.length() + OBJECT_ID_LENGTH);
+        }
+      }
+    }
+
+    return null;
+  }
+
+  private long sizeOf(File file) {
+    if (file.isFile()) {
+      return file.length();
+    }
+    long total = 0;
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        total += sizeOf(child);
+      }
+    }
+    return total;
+  }
+
+  private boolean deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    try {
+      return Files.deleteIfExists(file.toPath());
+    } catch (Exception e) {
+      log.warn("No se pudo eliminar temporal {}: {}", file.getPath(), e.getMessage());
+      return false;
+    }
+  }
+}
@@ -1,24 +1,36 @@
 package com.josval.miniyoutube.video;
 
-import com.josval.miniyoutube.subscription.SubscriptionEntity;
+import com.josval.miniyoutube.analytics.UniqueViewerService;
+import com.josval.miniyoutube.analytics.ViewRollupService;
+import com.josval.miniyoutube.analytics.ViewerIdentity;
+import com.josval.miniyoutube.service.DbRefBatchLoader;
+import com.josval.miniyoutube.service.S3Service;
+import com.josval.miniyoutube.user.UserCache;
 import com.josval.miniyoutube.user.UserEntity;
 import com.josval.miniyoutube.user.UserRepository;
+import com.josval.miniyoutube.video.dto.CursorPage;
 import com.josval.miniyoutube.video.dto.HistoryItemResponse;
 import com.josval.miniyoutube.video.dto.UploadVideoRequest;
 import com.josval.miniyoutube.video.dto.VideoResponse;
 import com.josval.miniyoutube.video.enums.ReactionType;
+import com.josval.miniyoutube.video.enums.TranscodingLane;
 import com.josval.miniyoutube.video.enums.VideoPrivacyStatus;
 import com.josval.miniyoutube.video.enums.VideoProcessingStatus;
+import com.mongodb.client.result.UpdateResult;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -30,16 +42,28 @@ public class VideoService {
 
   private final VideoRepository videoRepository;
   private final UserRepository userRepository;
-  private final VideoProcessingService videoProcessingService;
+  private final UserCache userCache;
+  private final TranscodingQueueService transcodingQueueService;
+  private final S3Service s3Service;
+  private final HomeFeedService homeFeedService;
+  private final DbRefBatchLoader dbRefBatchLoader;
   private final VideoViewRepository videoViewRepository;
-  private final com.josval.miniyoutube.subscription.SubscriptionRepository subscriptionRepository;
   private final VideoReactionRepository videoReactionRepository;
+  private final ViewCountBuffer viewCountBuffer;
+  private final ViewBloomFilter viewBloomFilter;
+  private final UniqueViewerService uniqueViewerService;
+  private final ViewRollupService viewRollupService;
+  private final TrendingService trendingService;
+  private final VideoEventBroadcaster videoEventBroadcaster;
+  private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
   @Qualifier("publicMongoTemplate")
   private final MongoTemplate publicMongoTemplate;
 
   /**
    * Listar videos públicos completados, paginado y ordenado por fecha más reciente
-   * Si el usuario está autenticado, muestra primero videos de canales suscritos
+   * Si el usuario está autenticado usa el feed de inicio (HomeFeedService), que muestra primero
+   * los videos de canales suscritos; para scroll profundo conviene el modo cursor
    */
   public Page<VideoResponse> listPublicVideos(String userEmail, int page, int size) {
     // Si no hay usuario autenticado, retornar todos los videos públicos normalmente
@@ -57,81 +81,70 @@ public class VideoService {
       return new PageImpl<>(list.stream().map(this::mapToResponse).toList(), pageable, total);
     }
 
-    // Usuario autenticado: priorizar videos de suscripciones
-    UserEntity user = userRepository.findByEmail(userEmail).orElse(null);
+    // Usuario autenticado: feed de inicio (suscripciones primero, luego el resto)
+    UserEntity user = userCache.findByEmail(userEmail).orElse(null);
     if (user == null) {
       // Si no se encuentra el usuario, retornar videos normales
-      Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-      Page<VideoEntity> videos = videoRepository.findByPrivacyStatusAndProcessingStatus(
-          VideoPrivacyStatus.PUBLIC,
-          VideoProcessingStatus.COMPLETED,
-          pageable
-      );
-      return videos.map(this::mapToResponse);
+      return listPublicVideos(null, page, size);
     }
 
-    // Obtener IDs de canales suscritos
-    List<SubscriptionEntity> subscriptions = subscriptionRepository.findBySubscriber(
-        user,
-        PageRequest.of(0, 1000) // Limite razonable de suscripciones
-    ).getContent();
-
-    Set<String> subscribedChannelIds = subscriptions.stream()
-        .map(sub -> sub.getChannel().getId())
-        .collect(Collectors.toSet());
+    Pageable pageable = PageRequest.of(page, size);
+    List<VideoResponse> content = homeFeedService.buildFeedPage(user.getId(), page, size).stream()
+        .map(this::mapToResponse)
+        .toList();
+    // El feed recorre todos los videos públicos: suscripciones más la cola del resto
+    long total = publicMongoTemplate.count(
+        new Query().addCriteria(Criteria.where("privacyStatus").in(VideoPrivacyStatus.PUBLIC, VideoPrivacyStatus.UNLISTED)
+            .and("processingStatus").is(VideoProcessingStatus.COMPLETED)),
+        "videos_public");
+    return new PageImpl<>(content, pageable, total);
+  }
 
-    // Si no tiene suscripciones, retornar videos normales
-    if (subscribedChannelIds.isEmpty()) {
-      Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-      Page<VideoEntity> videos = videoRepository.findByPrivacyStatusAndProcessingStatus(
-          VideoPrivacyStatus.PUBLIC,
-          VideoProcessingStatus.COMPLETED,
-          pageable
-      );
-      return videos.map(this::mapToResponse);
+  /**
+   * Listar videos públicos completados paginando por cursor (createdAt, id)
+   * Cada página es un rango sobre privacy_processing_created_id_idx, sin skip; el total solo se cuenta si se pide
+   * Con usuario autenticado se usa el feed de inicio (suscripciones primero)
+   */
+  public CursorPage<VideoResponse> listPublicVideosByCursor(String userEmail, String cursor, int size, boolean includeTotal) {
+    int limit = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+    FeedCursor after = FeedCursor.decode(cursor);
+
+    CursorPage<VideoEntity> page;
+    UserEntity user = userEmail != null ? userCache.findByEmail(userEmail).orElse(null) : null;
+    if (user != null) {
+      page = homeFeedService.buildFeed(user.getId(), after, limit);
+    } else {
+      page = listPublicPage(after, limit);
     }
 
-    // Obtener TODOS los videos públicos (necesario para ordenar correctamente)
-    // Para paginación eficiente, obtenemos más de lo necesario
-    int totalToFetch = (page + 2) * size; // Obtener suficientes para esta página y la siguiente
-    Pageable fetchPageable = PageRequest.of(0, totalToFetch, Sort.by(Sort.Direction.DESC, "createdAt"));
-    List<VideoEntity> allVideos = videoRepository.findByPrivacyStatusAndProcessingStatus(
-        VideoPrivacyStatus.PUBLIC,
-        VideoProcessingStatus.COMPLETED,
-        fetchPageable
-    ).getContent();
-
-    // Separar videos de suscripciones y otros
-    List<VideoEntity> subscribedVideos = new ArrayList<>();
-    List<VideoEntity> otherVideos = new ArrayList<>();
-
-    for (VideoEntity video : allVideos) {
-      if (subscribedChannelIds.contains(video.getCreator().getId())) {
-        subscribedVideos.add(video);
-      } else {
-        otherVideos.add(video);
-      }
+    Long total = null;
+    if (includeTotal) {
+      total = publicMongoTemplate.count(
+          new Query().addCriteria(Criteria.where("privacyStatus").in(VideoPrivacyStatus.PUBLIC, VideoPrivacyStatus.UNLISTED)
+              .and("processingStatus").is(VideoProcessingStatus.COMPLETED)),
+          "videos_public");
     }
 
-    // Combinar: primero videos de suscripciones, luego otros
-    List<VideoEntity> sortedVideos = new ArrayList<>();
-    sortedVideos.addAll(subscribedVideos);
-    sortedVideos.addAll(otherVideos);
-
-    // Aplicar paginación manual
-    int start = page * size;
-    int end = Math.min(start + size, sortedVideos.size());
+    return new CursorPage<>(page.getContent().stream().map(this::mapToResponse).toList(),
+        page.getNextCursor(), page.isHasMore(), total);
+  }
 
-    if (start >= sortedVideos.size()) {
-      return new PageImpl<>(Collections.emptyList(), PageRequest.of(page, size), sortedVideos.size());
+  private CursorPage<VideoEntity> listPublicPage(FeedCursor after, int limit) {
+    Criteria criteria = Criteria.where("privacyStatus").in(VideoPrivacyStatus.PUBLIC, VideoPrivacyStatus.UNLISTED)
+        .and("processingStatus").is(VideoProcessingStatus.COMPLETED);
+    if (after != null && after.hasPosition()) {
+      criteria = new Criteria().andOperator(criteria, after.afterCriteria());
     }
 
-    List<VideoEntity> pageContent = sortedVideos.subList(start, end);
-    List<VideoResponse> responseContent = pageContent.stream()
-        .map(this::mapToResponse)
-        .collect(Collectors.toList());
+    Query query = new Query(criteria)
+        .with(Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("_id")))
+        .limit(limit + 1);
+    List<VideoEntity> list = publicMongoTemplate.find(query, VideoEntity.class, "videos_public");
 
-    return new PageImpl<>(responseContent, PageRequest.of(page, size), sortedVideos.size());
+    boolean hasMore = list.size() > limit;
+    List<VideoEntity> pageContent = hasMore ? list.subList(0, limit) : list;
+    String nextCursor = hasMore ? FeedCursor.of(pageContent.get(limit - 1)).encode() : null;
+    return new CursorPage<>(pageContent, nextCursor, hasMore, null);
   }
 
   /**
@@ -158,12 +171,17 @@ public class VideoService {
     }
 
     // Buscar usuario
-    UserEntity creator = userRepository.findByEmail(userEmail)
+    UserEntity creator = userCache.findByEmail(userEmail)
         .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
+    // Rechazar antes de crear el video o escribir en disco si la cola está llena (429)
+    String reservationId = transcodingQueueService.reserveSlot();
+    boolean enqueued = false;
+
     // Crear entidad de video
     VideoEntity video = new VideoEntity();
     video.setCreator(creator);
+    video.setCreatorSummary(CreatorSummary.from(creator));
     video.setTitle(request.getTitle());
     video.setDescription(request.getDescription());
     video.setPrivacyStatus(request.getPrivacyStatus() != null ? request.getPrivacyStatus() : VideoPrivacyStatus.PRIVATE);
@@ -174,7 +192,12 @@ public class VideoService {
     video.setCreatedAt(new Date());
 
     // Guardar video en BD con estado inicial
-    video = videoRepository.save(video);
+    try {
+      video = videoRepository.save(video);
+    } catch (RuntimeException e) {
+      transcodingQueueService.cancelReservation(reservationId);
+      throw e;
+    }
 
     log.info("Video creado con ID: {}, iniciando procesamiento asíncrono", video.getId());
 
@@ -183,20 +206,36 @@ public class VideoService {
       java.nio.file.Path tempFile = java.nio.file.Files.createTempFile("upload-" + video.getId() + "-", getFileExtension(videoFile.getOriginalFilename()));
       videoFile.transferTo(tempFile.toFile());
 
+      // Sin workers en este nodo (modo API): el original se deja en S3 para que lo tome un nodo worker
+      String sourcePath = tempFile.toString();
+      if (!transcodingQueueService.hasLocalWorkers()) {
+        video.setOriginalVideoUrl(s3Service.uploadFile(tempFile.toFile(), "videos/" + video.getId() + "/source", "application/octet-stream"));
+        java.nio.file.Files.deleteIfExists(tempFile);
+        sourcePath = null;
+      }
+
       // Marcar como PROCESSING (aún no hay calidades disponibles)
       video.setProcessingStatus(VideoProcessingStatus.PROCESSING);
+      video.setProcessingUpdatedAt(new Date());
       video.setAvailableQualities(new java.util.ArrayList<>());
       videoRepository.save(video);
 
-      log.info("Video guardado, procesamiento iniciado en background: {}", video.getId());
+      // Encolar el procesamiento incremental de TODAS las calidades (lo toma un worker)
+      transcodingQueueService.enqueue(video.getId(), creator.getId(), sourcePath, TranscodingLane.PRIMARY, true);
+      enqueued = true;
 
-      // Iniciar procesamiento incremental de TODAS las calidades en background (asíncrono)
-      videoProcessingService.processAllQualitiesIncremental(video.getId(), tempFile.toString());
+      log.info("Video guardado, procesamiento encolado: {}", video.getId());
 
     } catch (Exception e) {
       log.error("Error guardando video: {}", e.getMessage(), e);
       video.setProcessingStatus(VideoProcessingStatus.FAILED);
       videoRepository.save(video);
+    } finally {
+      if (enqueued) {
+        transcodingQueueService.confirmReservation(reservationId);
+      } else {
+        transcodingQueueService.cancelReservation(reservationId);
+      }
     }
 
     return mapToResponse(video);
@@ -212,7 +251,7 @@ public class VideoService {
    * Obtener información de un video por ID
    * Solo incrementa el contador de vistas si el usuario no ha visto el video antes
    */
-  public VideoResponse getVideoById(String videoId, String userEmail) {
+  public VideoResponse getVideoById(String videoId, String userEmail, HttpServletRequest request) {
     VideoEntity video = videoRepository.findById(videoId)
         .orElseThrow(() -> new RuntimeException("Video no encontrado"));
 
@@ -220,33 +259,75 @@ public class VideoService {
       throw new RuntimeException("No tienes permiso para ver este video");
     }
 
-    // Solo incrementar vistas si el usuario está autenticado y no ha visto el video antes
-    if (userEmail != null) {
-      UserEntity user = userRepository.findByEmail(userEmail).orElse(null);
-
-      if (user != null) {
-        String userId = user.getId();
+    UserEntity user = userEmail != null ? userCache.findByEmail(userEmail).orElse(null) : null;
 
-        // Verificar si el usuario ya vio este video
-        boolean alreadyViewed = videoViewRepository.existsByUserIdAndVideoId(userId, videoId);
+    // Espectadores únicos (HyperLogLog), incluye reproducciones anónimas
+    uniqueViewerService.record(videoId, ViewerIdentity.of(user != null ? user.getId() : null, request));
 
-        if (!alreadyViewed) {
-          // Registrar la vista
-          VideoView view = new VideoView(userId, videoId);
-          videoViewRepository.save(view);
-
-          // Incrementar contador de vistas
-          video.setViews_count(video.getViews_count() != null ? video.getViews_count() + 1 : 1);
-          videoRepository.save(video);
+    // Solo incrementar vistas si el usuario está autenticado y no ha visto el video antes
+    boolean counted = false;
+    if (user != null) {
+      String userId = user.getId();
+
+      // Un positivo del filtro es una vista repetida: no se consulta Mongo
+      if (!viewBloomFilter.mightContain(userId, videoId)) {
+        if (recordView(userId, videoId)) {
+          // El contador se acumula en memoria y se escribe por lotes (write-behind)
+          viewCountBuffer.increment(videoId);
+          counted = true;
+          if (video.getPrivacyStatus() == VideoPrivacyStatus.PUBLIC) {
+            trendingService.onView(videoId);
+          }
         }
+        viewBloomFilter.put(userId, videoId);
       }
     }
 
+    // Series temporales de vistas y reproducciones para los gráficos
+    viewRollupService.record(videoId, counted);
+
     return mapToResponse(video);
   }
 
+  /**
+   * Registrar la vista con un único upsert sobre el índice único user_video_idx
+   * Retorna true solo si la vista es nueva
+   */
+  private boolean recordView(String userId, String videoId) {
+    try {
+      UpdateResult result = publicMongoTemplate.upsert(
+          Query.query(Criteria.where("userId").is(userId).and("videoId").is(videoId)),
+          new Update().setOnInsert("viewedAt", new Date()),
+          VideoView.class);
+      return result.getUpsertedId() != null;
+    } catch (DuplicateKeyException e) {
+      // Upsert concurrente del mismo usuario: la vista ya quedó registrada
+      return false;
+    }
+  }
+
+  /**
+   * Videos en tendencia: se leen los K mejores del ranking en memoria y solo esos documentos
+   */
+  public List<VideoResponse> listTrending(int limit) {
+    int size = Math.max(1, Math.min(limit, MAX_CURSOR_PAGE_SIZE));
+    // Margen para los que dejaron de ser públicos o fueron eliminados
+    List<String> ids = trendingService.topVideoIds(Math.min(size * 2, trendingService.getCapacity()));
+    Map<String, VideoEntity> videosById = videoRepository.findAllById(ids).stream()
+        .collect(Collectors.toMap(VideoEntity::getId, v -> v));
+
+    return ids.stream()
+        .map(videosById::get)
+        .filter(video -> video != null
+            && video.getPrivacyStatus() == VideoPrivacyStatus.PUBLIC
+            && video.getProcessingStatus() == VideoProcessingStatus.COMPLETED)
+        .limit(size)
+        .map(this::mapToResponse)
+        .toList();
+  }
+
   public Page<HistoryItemResponse> getUserHistory(String userEmail, int page, int size) {
-    UserEntity user = userRepository.findByEmail(userEmail)
+    UserEntity user = userCache.findByEmail(userEmail)
         .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
     Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "viewedAt"));
@@ -274,7 +355,7 @@ public class VideoService {
   }
 
   public Page<VideoResponse> getLikedVideos(String userEmail, int page, int size) {
-    UserEntity user = userRepository.findByEmail(userEmail)
+    UserEntity user = userCache.findByEmail(userEmail)
         .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
     Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "id"));
@@ -284,8 +365,12 @@ public class VideoService {
         pageable
     );
 
+    // Resolver todos los videos de la página con una sola consulta
+    Map<String, VideoEntity> videosById = dbRefBatchLoader.batch().load(VideoEntity.class,
+        reactions.getContent().stream().map(VideoReaction::getVideo).toList());
+
     List<VideoResponse> content = reactions.getContent().stream()
-        .map(VideoReaction::getVideo)
+        .map(reaction -> videosById.get(reaction.getVideoId()))
         .filter(Objects::nonNull)
         .map(this::mapToResponse)
         .toList();
@@ -309,13 +394,13 @@ public class VideoService {
       return false;
     }
 
-    UserEntity user = userRepository.findByEmail(userEmail).orElse(null);
+    UserEntity user = userCache.findByEmail(userEmail).orElse(null);
     if (user == null) {
       return false;
     }
 
     // Solo el creador puede ver videos privados
-    return video.getCreator().getId().equals(user.getId());
+    return user.getId().equals(video.getCreatorId());
   }
 
   /**
@@ -324,9 +409,13 @@ public class VideoService {
   private VideoResponse mapToResponse(VideoEntity video) {
     VideoResponse response = new VideoResponse();
     response.setId(video.getId());
-    response.setCreatorId(video.getCreator().getId());
-    response.setCreatorChannelName(video.getCreator().getChannelName());
-    response.setCreatorAvatarUrl(video.getCreator().getAvatarURL());
+    // El snapshot evita resolver el DBRef; videos sin migrar recurren al creador referenciado
+    CreatorSummary creator = video.getCreatorSummary() != null
+        ? video.getCreatorSummary()
+        : CreatorSummary.from(video.getCreator());
+    response.setCreatorId(creator.getId());
+    response.setCreatorChannelName(creator.getChannelName());
+    response.setCreatorAvatarUrl(creator.getAvatarURL());
     response.setTitle(video.getTitle());
     response.setDescription(video.getDescription());
     response.setPrivacyStatus(video.getPrivacyStatus());
@@ -334,12 +423,15 @@ public class VideoService {
     response.setThumbnailUrl(video.getThumbnailUrl());
     response.setDuration_sec(video.getDuration_sec());
     response.setTags(video.getTags());
-    response.setViews_count(video.getViews_count());
+    // Sumar las vistas pendientes de escribir para que el conteo se vea al día
+    long views = (video.getViews_count() != null ? video.getViews_count() : 0) + viewCountBuffer.pending(video.getId());
+    response.setViews_count((int) views);
     response.setLikes_count(video.getLikes_count());
     response.setDislikes_count(video.getDislikes_count());
     response.setProcessingStatus(video.getProcessingStatus());
     response.setHlsManifestUrl(video.getHlsManifestUrl());
     response.setAvailableQualities(video.getAvailableQualities());
+    response.setStoryboardUrl(video.getStoryboardUrl());
     response.setCreatedAt(video.getCreatedAt());
     return response;
   }
@@ -348,128 +440,145 @@ public class VideoService {
    * Dar like a un video
    * Si ya tiene like, lo remueve. Si tiene dislike, lo cambia a like.
    */
-  @Transactional
   public void likeVideo(String videoId, String userEmail) {
+    toggleReaction(videoId, userEmail, ReactionType.LIKE);
+  }
+
+  /**
+   * Dar dislike a un video
+   * Si ya tiene dislike, lo remueve. Si tiene like, lo cambia a dislike.
+   */
+  public void dislikeVideo(String videoId, String userEmail) {
+    toggleReaction(videoId, userEmail, ReactionType.DISLIKE);
+  }
+
+  /**
+   * Suscribirse a los cambios en vivo de un video (comentarios nuevos, likes/dislikes y procesamiento)
+   */
+  public SseEmitter subscribeEvents(String videoId, String userEmail) {
     VideoEntity video = videoRepository.findById(videoId)
         .orElseThrow(() -> new RuntimeException("Video no encontrado"));
 
     if (!canUserAccessVideo(video, userEmail)) {
-      throw new RuntimeException("No tienes permiso para interactuar con este video");
+      throw new RuntimeException("No tienes permiso para ver este video");
     }
+    return videoEventBroadcaster.subscribe(videoId);
+  }
 
-    UserEntity user = userRepository.findByEmail(userEmail)
+  /**
+   * Remover reacción (like o dislike) de un video
+   */
+  public void removeReaction(String videoId, String userEmail) {
+    VideoEntity video = findInteractableVideo(videoId, userEmail);
+    UserEntity user = userCache.findByEmail(userEmail)
         .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
-    Optional<VideoReaction> existingReaction = videoReactionRepository.findByUserAndVideo(user, video);
+    VideoReaction removed = publicMongoTemplate.findAndRemove(
+        reactionQuery(user, video), VideoReaction.class);
 
-    if (existingReaction.isPresent()) {
-      VideoReaction reaction = existingReaction.get();
-
-      if (reaction.getType() == ReactionType.LIKE) {
-        // Ya tiene like, removerlo
-        videoReactionRepository.delete(reaction);
-        video.setLikes_count(Math.max(0, video.getLikes_count() - 1));
-        log.info("Usuario {} removió like del video {}", user.getUsername(), videoId);
-      } else {
-        // Tiene dislike, cambiar a like
-        reaction.setType(ReactionType.LIKE);
-        videoReactionRepository.save(reaction);
-        video.setDislikes_count(Math.max(0, video.getDislikes_count() - 1));
-        video.setLikes_count(video.getLikes_count() + 1);
-        log.info("Usuario {} cambió dislike a like en video {}", user.getUsername(), videoId);
-      }
-    } else {
-      // No tiene reacción, crear like
-      VideoReaction reaction = new VideoReaction();
-      reaction.setVideo(video);
-      reaction.setUser(user);
-      reaction.setType(ReactionType.LIKE);
-      videoReactionRepository.save(reaction);
-      video.setLikes_count(video.getLikes_count() + 1);
-      log.info("Usuario {} dio like al video {}", user.getUsername(), videoId);
+    if (removed != null) {
+      incrementCounters(videoId, null, counterField(removed.getType()));
+      log.info("Usuario {} removió su reacción del video {}", user.getUsername(), videoId);
     }
-
-    videoRepository.save(video);
   }
 
   /**
-   * Dar dislike a un video
-   * Si ya tiene dislike, lo remueve. Si tiene like, lo cambia a dislike.
+   * Alternar una reacción con operaciones atómicas sobre la reacción y los contadores
+   * Quitar la misma reacción es un findAndRemove; crear o cambiar es un upsert sobre (usuario, video)
+   * que devuelve el documento anterior para saber qué contador corregir
    */
-  @Transactional
-  public void dislikeVideo(String videoId, String userEmail) {
-    VideoEntity video = videoRepository.findById(videoId)
-        .orElseThrow(() -> new RuntimeException("Video no encontrado"));
+  private void toggleReaction(String videoId, String userEmail, ReactionType type) {
+    VideoEntity video = findInteractableVideo(videoId, userEmail);
+    UserEntity user = userCache.findByEmail(userEmail)
+        .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
 
-    if (!canUserAccessVideo(video, userEmail)) {
-      throw new RuntimeException("No tienes permiso para interactuar con este video");
+    Query sameType = reactionQuery(user, video).addCriteria(Criteria.where("type").is(type));
+    if (publicMongoTemplate.findAndRemove(sameType, VideoReaction.class) != null) {
+      incrementCounters(videoId, null, counterField(type));
+      log.info("Usuario {} removió {} del video {}", user.getUsername(), type, videoId);
+      return;
     }
 
-    UserEntity user = userRepository.findByEmail(userEmail)
-        .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-
-    Optional<VideoReaction> existingReaction = videoReactionRepository.findByUserAndVideo(user, video);
+    VideoReaction previous;
+    try {
+      previous = upsertReaction(user, video, type);
+    } catch (DuplicateKeyException e) {
+      // Otro request insertó la reacción a la vez; el reintento ya actualiza el documento existente
+      previous = upsertReaction(user, video, type);
+    }
 
-    if (existingReaction.isPresent()) {
-      VideoReaction reaction = existingReaction.get();
+    if (type == ReactionType.LIKE && (previous == null || previous.getType() != type)
+        && video.getPrivacyStatus() == VideoPrivacyStatus.PUBLIC) {
+      trendingService.onLike(videoId);
+    }
 
-      if (reaction.getType() == ReactionType.DISLIKE) {
-        // Ya tiene dislike, removerlo
-        videoReactionRepository.delete(reaction);
-        video.setDislikes_count(Math.max(0, video.getDislikes_count() - 1));
-        log.info("Usuario {} removió dislike del video {}", user.getUsername(), videoId);
-      } else {
-        // Tiene like, cambiar a dislike
-        reaction.setType(ReactionType.DISLIKE);
-        videoReactionRepository.save(reaction);
-        video.setLikes_count(Math.max(0, video.getLikes_count() - 1));
-        video.setDislikes_count(video.getDislikes_count() + 1);
-        log.info("Usuario {} cambió like a dislike en video {}", user.getUsername(), videoId);
-      }
-    } else {
-      // No tiene reacción, crear dislike
-      VideoReaction reaction = new VideoReaction();
-      reaction.setVideo(video);
-      reaction.setUser(user);
-      reaction.setType(ReactionType.DISLIKE);
-      videoReactionRepository.save(reaction);
-      video.setDislikes_count(video.getDislikes_count() + 1);
-      log.info("Usuario {} dio dislike al video {}", user.getUsername(), videoId);
+    if (previous == null) {
+      incrementCounters(videoId, counterField(type), null);
+      log.info("Usuario {} dio {} al video {}", user.getUsername(), type, videoId);
+    } else if (previous.getType() != type) {
+      incrementCounters(videoId, counterField(type), counterField(previous.getType()));
+      log.info("Usuario {} cambió {} a {} en video {}", user.getUsername(), previous.getType(), type, videoId);
     }
+  }
 
-    videoRepository.save(video);
+  private VideoReaction upsertReaction(UserEntity user, VideoEntity video, ReactionType type) {
+    return publicMongoTemplate.findAndModify(
+        reactionQuery(user, video),
+        new Update().set("type", type),
+        FindAndModifyOptions.options().upsert(true).returnNew(false),
+        VideoReaction.class);
   }
 
-  /**
-   * Remover reacción (like o dislike) de un video
-   */
-  @Transactional
-  public void removeReaction(String videoId, String userEmail) {
+  private Query reactionQuery(UserEntity user, VideoEntity video) {
+    return Query.query(Criteria.where("user").is(user).and("video").is(video));
+  }
+
+  private VideoEntity findInteractableVideo(String videoId, String userEmail) {
     VideoEntity video = videoRepository.findById(videoId)
         .orElseThrow(() -> new RuntimeException("Video no encontrado"));
 
     if (!canUserAccessVideo(video, userEmail)) {
       throw new RuntimeException("No tienes permiso para interactuar con este video");
     }
+    return video;
+  }
 
-    UserEntity user = userRepository.findByEmail(userEmail)
-        .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-
-    Optional<VideoReaction> existingReaction = videoReactionRepository.findByUserAndVideo(user, video);
-
-    if (existingReaction.isPresent()) {
-      VideoReaction reaction = existingReaction.get();
+  private String counterField(ReactionType type) {
+    return type == ReactionType.LIKE ? "likes_count" : "dislikes_count";
+  }
 
-      if (reaction.getType() == ReactionType.LIKE) {
-        video.setLikes_count(Math.max(0, video.getLikes_count() - 1));
-      } else {
-        video.setDislikes_count(Math.max(0, video.getDislikes_count() - 1));
+  /**
+   * $inc sobre los contadores del video sin reescribir el documento
+   * El decremento solo se aplica si el contador es positivo, para no bajar de cero
+   */
+  private void incrementCounters(String videoId, String incrementField, String decrementField) {
+    if (decrementField != null) {
+      Update update = new Update().inc(decrementField, -1);
+      if (incrementField != null) {
+        update.inc(incrementField, 1);
+      }
+      UpdateResult result = publicMongoTemplate.updateFirst(
+          Query.query(Criteria.where("_id").is(videoId).and(decrementField).gt(0)),
+          update, VideoEntity.class);
+      if (result.getModifiedCount() > 0) {
+        publishCounters(videoId, incrementField, decrementField);
+        return;
       }
+      if (incrementField == null) {
+        return;
+      }
+    }
 
-      videoReactionRepository.delete(reaction);
-      videoRepository.save(video);
+    publicMongoTemplate.updateFirst(
+        Query.query(Criteria.where("_id").is(videoId)),
+        new Update().inc(incrementField, 1),
+        VideoEntity.class);
+    publishCounters(videoId, incrementField, null);
+  }
 
-      log.info("Usuario {} removió su reacción del video {}", user.getUsername(), videoId);
-    }
+  private void publishCounters(String videoId, String incrementField, String decrementField) {
+    int likes = ("likes_count".equals(incrementField) ? 1 : 0) - ("likes_count".equals(decrementField) ? 1 : 0);
+    int dislikes = ("dislikes_count".equals(incrementField) ? 1 : 0) - ("dislikes_count".equals(decrementField) ? 1 : 0);
+    videoEventBroadcaster.publishCounters(videoId, likes, dislikes);
   }
 }
@@ -0,0 +1,199 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.config.NodeRole;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Filtro de Bloom escalable de pares (usuario, video) ya vistos
+ * Un positivo se trata como vista repetida y evita ir a Mongo; con video.views.bloom.fpp de falsos
+ * positivos, esa fracción de primeras vistas no se cuenta. Cuando una capa se llena se agrega otra
+ * del doble de capacidad y la mitad de falsos positivos, así la tasa total queda acotada
+ * Se reconstruye desde video_views al arrancar (solo en nodos que reciben tráfico)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ViewBloomFilter {
+
+  private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+  private final MongoTemplate mongoTemplate;
+  private final NodeRole nodeRole;
+
+  private final List<Layer> layers = new CopyOnWriteArrayList<>();
+
+  @Value("${video.views.bloom.initial-capacity:1000000}")
+  private long initialCapacity;
+
+  @Value("${video.views.bloom.fpp:0.001}")
+  private double fpp;
+
+  /**
+   * Reconstruir el filtro con las vistas existentes (en segundo plano)
+   * Mientras tanto los negativos solo cuestan el upsert, que sigue siendo exacto
+   */
+  @Async
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    if (!nodeRole.servesTraffic()) {
+      return;  // Un worker no registra vistas: evitar recorrer video_views
+    }
+    Query query = new Query();
+    query.fields().include("userId", "videoId");
+
+    long loaded = 0;
+    try (Stream<Document> views = mongoTemplate.stream(query, Document.class, "video_views")) {
+      for (Document view : (Iterable<Document>) views::iterator) {
+        put(view.getString("userId"), view.getString("videoId"));
+        loaded++;
+      }
+      log.info("Filtro de vistas reconstruido con {} pares ({} capas)", loaded, layers.size());
+    } catch (Exception e) {
+      log.error("Error reconstruyendo el filtro de vistas tras {} pares: {}", loaded, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * true si el par posiblemente ya se registró; false si seguro que no
+   */
+  public boolean mightContain(String userId, String videoId) {
+    long hash1 = hash(userId, videoId);
+    long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+    for (Layer layer : layers) {
+      if (layer.mightContain(hash1, hash2)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Registrar un par visto
+   */
+  public void put(String userId, String videoId) {
+    if (userId == null || videoId == null) {
+      return;
+    }
+    long hash1 = hash(userId, videoId);
+    long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+    for (Layer layer : layers) {
+      if (layer.mightContain(hash1, hash2)) {
+        return;
+      }
+    }
+
+    Layer layer = currentLayer();
+    layer.put(hash1, hash2);
+    if (layer.count.incrementAndGet() >= layer.capacity) {
+      grow(layer);
+    }
+  }
+
+  private Layer currentLayer() {
+    if (layers.isEmpty()) {
+      grow(null);
+    }
+    return layers.get(layers.size() - 1);
+  }
+
+  /**
+   * Agregar una capa si la actual sigue siendo la última (varios hilos pueden detectar que se llenó)
+   */
+  private synchronized void grow(Layer full) {
+    Layer last = layers.isEmpty() ? null : layers.get(layers.size() - 1);
+    if (last != full) {
+      return;
+    }
+    int index = layers.size();
+    long capacity = initialCapacity << index;
+    double layerFpp = fpp * Math.pow(0.5, index + 1);
+    layers.add(new Layer(capacity, layerFpp));
+    if (index > 0) {
+      log.info("Filtro de vistas: nueva capa {} (capacidad {})", index, capacity);
+    }
+  }
+
+  private long hash(String userId, String videoId) {
+    // FNV-1a de 64 bits sobre "userId:videoId" con mezcla final
+    long hash = 0xCBF29CE484222325L;
+    hash = fnv(hash, userId);
+    hash = (hash ^ ':') * 0x100000001B3L;
+    hash = fnv(hash, videoId);
+    return mix(hash);
+  }
+
+  private long fnv(long hash, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+    }
+    return hash;
+  }
+
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xFF51AFD7ED558CCDL;
+    value ^= value >>> 33;
+    value *= 0xC4CEB9FE1A85EC53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /**
+   * Capa de bits con k funciones hash derivadas de dos hashes (doble hashing)
+   */
+  private static class Layer {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+    private final AtomicLong count = new AtomicLong();
+
+    private Layer(long capacity, double fpp) {
+      long bitsNeeded = (long) Math.ceil(-capacity * Math.log(fpp) / LN2_SQUARED);
+      this.bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, (bitsNeeded + 63) / 64));
+      this.bitCount = (long) bits.length() * 64;
+      this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+      this.capacity = capacity;
+    }
+
+    private boolean mightContain(long hash1, long hash2) {
+      for (int i = 0; i < hashCount; i++) {
+        long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+        if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void put(long hash1, long hash2) {
+      for (int i = 0; i < hashCount; i++) {
+        long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current;
+        do {
+          current = bits.get(index);
+          if ((current & mask) != 0) {
+            break;
+          }
+        } while (!bits.compareAndSet(index, current, current | mask));
+      }
+    }
+  }
+}
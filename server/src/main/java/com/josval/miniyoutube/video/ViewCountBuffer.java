@@ -0,0 +1,132 @@
+package com.josval.miniyoutube.video;
+
+import com.josval.miniyoutube.config.NodeRole;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind del contador de vistas
+ * Las vistas se acumulan en memoria (LongAdder por video) y se escriben cada video.views.flush-ms
+ * con un único bulkWrite de $inc; las lecturas suman lo pendiente para mostrar el conteo al día
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ViewCountBuffer {
+
+  private final MongoTemplate mongoTemplate;
+  private final NodeRole nodeRole;
+
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+  /**
+   * Registrar una vista nueva de un video
+   */
+  public void increment(String videoId) {
+    // Dentro de compute para que el desalojo de flush() no deje la vista en un contador ya quitado
+    counters.compute(videoId, (id, existing) -> {
+      Counter counter = existing != null ? existing : new Counter();
+      counter.added.increment();
+      return counter;
+    });
+  }
+
+  /**
+   * Vistas registradas que aún no se escribieron en Mongo
+   */
+  public long pending(String videoId) {
+    Counter counter = counters.get(videoId);
+    return counter != null ? counter.pending() : 0;
+  }
+
+  /**
+   * Escribir los deltas acumulados con un bulkWrite desordenado de $inc
+   * Si la escritura falla los deltas se conservan para el siguiente ciclo; en un fallo parcial solo
+   * los de las operaciones rechazadas, porque las demás ya se aplicaron
+   */
+  @Scheduled(fixedDelayString = "${video.views.flush-ms:5000}")
+  public synchronized void flush() {
+    if (!nodeRole.servesTraffic()) {
+      return;  // Los workers no registran vistas
+    }
+    // En el mismo orden que las operaciones del bulk (los errores se reportan por índice)
+    List<Map.Entry<Counter, Long>> deltas = new ArrayList<>();
+    BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, VideoEntity.class);
+
+    counters.forEach((videoId, counter) -> {
+      long delta = counter.pending();
+      if (delta > 0) {
+        deltas.add(Map.entry(counter, delta));
+        ops.updateOne(Query.query(Criteria.where("_id").is(videoId)), new Update().inc("views_count", delta));
+      } else {
+        evict(videoId, counter);
+      }
+    });
+
+    if (deltas.isEmpty()) {
+      return;
+    }
+
+    try {
+      ops.execute();
+      markFlushed(deltas, Set.of());
+      log.debug("Vistas escritas para {} videos", deltas.size());
+    } catch (BulkOperationException e) {
+      Set<Integer> failed = new HashSet<>();
+      e.getErrors().forEach(error -> failed.add(error.getIndex()));
+      markFlushed(deltas, failed);
+      log.error("Error escribiendo {} de {} contadores de vistas, se reintentarán: {}",
+          failed.size(), deltas.size(), e.getMessage());
+    } catch (Exception e) {
+      log.error("Error escribiendo contadores de vistas, se reintentará: {}", e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    flush();
+  }
+
+  private void markFlushed(List<Map.Entry<Counter, Long>> deltas, Set<Integer> failed) {
+    for (int i = 0; i < deltas.size(); i++) {
+      if (!failed.contains(i)) {
+        Map.Entry<Counter, Long> entry = deltas.get(i);
+        entry.getKey().flushed += entry.getValue();
+      }
+    }
+  }
+
+  /**
+   * Quitar un contador sin actividad desde el último ciclo
+   * Atómico respecto a increment(): si llegó una vista después de leer el delta, el contador se conserva
+   */
+  private void evict(String videoId, Counter counter) {
+    counters.computeIfPresent(videoId, (id, current) -> current == counter && current.pending() == 0 ? null : current);
+  }
+
+  private static class Counter {
+    private final LongAdder added = new LongAdder();
+    private volatile long flushed; // Solo lo modifica flush()
+
+    private long pending() {
+      return added.sum() - flushed;
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.josval.miniyoutube.video.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Página de resultados paginada por cursor")
+public class CursorPage<T> {
+
+  @Schema(description = "Elementos de la página")
+  private List<T> content;
+
+  @Schema(description = "Cursor para pedir la siguiente página (null si no hay más)")
+  private String nextCursor;
+
+  @Schema(description = "Indica si hay más resultados")
+  private boolean hasMore;
+
+  @Schema(description = "Total de elementos (solo si se pidió includeTotal=true)")
+  private Long totalElements;
+}
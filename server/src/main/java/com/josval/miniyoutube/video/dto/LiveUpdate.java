@@ -0,0 +1,37 @@
+package com.josval.miniyoutube.video.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.josval.miniyoutube.comment.dto.CommentResponse;
+import com.josval.miniyoutube.video.enums.VideoProcessingStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Collection;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Cambios de un video acumulados en una ventana corta (solo se envían los campos que cambiaron)")
+public class LiveUpdate {
+
+  @Schema(description = "Comentarios nuevos, en orden de creación")
+  private List<CommentResponse> comments;
+
+  @Schema(description = "Variación de likes en la ventana")
+  private Integer likesDelta;
+
+  @Schema(description = "Variación de dislikes en la ventana")
+  private Integer dislikesDelta;
+
+  @Schema(description = "Estado de procesamiento actual")
+  private VideoProcessingStatus processingStatus;
+
+  @Schema(description = "Calidades disponibles actuales")
+  private Collection<String> availableQualities;
+}
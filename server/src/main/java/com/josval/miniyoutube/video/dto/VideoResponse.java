@@ -69,6 +69,9 @@ public class VideoResponse {
   @Schema(description = "Calidades disponibles actualmente", example = "[\"360p\", \"480p\", \"720p\"]")
   private Collection<String> availableQualities;
 
+  @Schema(description = "URL del índice WebVTT del storyboard (previews de seek)", example = "http://localhost:8080/api/stream/videos/video-id/storyboard/storyboard.vtt")
+  private String storyboardUrl;
+
   @Schema(description = "Fecha de creación", example = "2025-11-21T10:30:00Z")
   private Date createdAt;
 }
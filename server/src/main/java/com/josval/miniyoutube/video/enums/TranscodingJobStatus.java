@@ -0,0 +1,6 @@
+package com.josval.miniyoutube.video.enums;
+
+public enum TranscodingJobStatus {
+  QUEUED,
+  RUNNING
+}
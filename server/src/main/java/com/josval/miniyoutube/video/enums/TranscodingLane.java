@@ -0,0 +1,20 @@
+package com.josval.miniyoutube.video.enums;
+
+/**
+ * Carril de prioridad de un trabajo de transcodificación (menor prioridad = se atiende antes)
+ */
+public enum TranscodingLane {
+  PRIMARY(0),    // Primera calidad reproducible de un video recién subido
+  REMAINING(1),  // Calidades superiores de un video que ya es reproducible
+  BACKFILL(2);   // Re-codificaciones lanzadas por un administrador
+
+  private final int priority;
+
+  TranscodingLane(int priority) {
+    this.priority = priority;
+  }
+
+  public int getPriority() {
+    return priority;
+  }
+}